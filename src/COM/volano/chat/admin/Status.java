@@ -49,6 +49,12 @@ public class Status implements Observer {
     private long          oldTime;
     private long          oldReceivedCount;
     private long          oldSentCount;
+    private int           queuedCount;
+    private long          queuedBytes;
+    private long          shardCount;
+    private long          shardTime;
+    private long          oldShardCount;
+    private long          oldShardTime;
 
     /**
      * Creates a <code>Status</code> object which connects to the chat server
@@ -92,6 +98,8 @@ public class Status implements Observer {
         try {
             if (object instanceof Report) {
                 report((Report) object);
+            } else if (object instanceof QueueReport) {
+                queueReport((QueueReport) object);
             } else if (object instanceof Ping) {
                 ping(connection, (Ping) object);
             } else if (object instanceof Monitor) {
@@ -134,6 +142,8 @@ public class Status implements Observer {
             int   receivedPerSec   = Math.round((float) receivedInterval / seconds);
             int   sentPerSec       = Math.round((float) sentInterval     / seconds);
             int   packetsPerSec    = receivedPerSec + sentPerSec;
+            long  shardInterval    = shardCount - oldShardCount;
+            long  microsPerShard   = shardInterval == 0 ? 0 : (shardTime - oldShardTime) / shardInterval / 1000;
             Date  date             = new Date(time);
 
             Object[] heap = new Object[Default.HEAP_SIZE];
@@ -143,9 +153,13 @@ public class Status implements Observer {
             String heapInfo = heapFormatter.format(heap);
 
             Object[] res = new Object[Default.RES_SIZE];
-            res[Default.RES_THREADS]     = new Integer(threadCount);
-            res[Default.RES_CONNECTIONS] = new Integer(connectionCount);
-            res[Default.RES_UNIQUE]      = new Integer(uniqueCount);
+            res[Default.RES_THREADS]      = new Integer(threadCount);
+            res[Default.RES_CONNECTIONS]  = new Integer(connectionCount);
+            res[Default.RES_UNIQUE]       = new Integer(uniqueCount);
+            res[Default.RES_QUEUED]       = new Integer(queuedCount);
+            res[Default.RES_QUEUED_BYTES] = new Long(queuedBytes);
+            res[Default.RES_SHARDS]       = new Long(shardInterval);
+            res[Default.RES_SHARD_TIME]   = new Long(microsPerShard);
             String resInfo = resFormatter.format(res);
 
             Object[] status = new Object[Default.STATUS_SIZE];
@@ -165,6 +179,22 @@ public class Status implements Observer {
         oldTime          = time;
         oldReceivedCount = receivedCount;
         oldSentCount     = sentCount;
+        oldShardCount    = shardCount;
+        oldShardTime     = shardTime;
+    }
+
+    /**
+     * Saves the send queue depth and the broadcast shard totals for printing
+     * with the next status report.
+     *
+     * @param indication  the send queue report indication packet.
+     */
+
+    private void queueReport(QueueReport indication) {
+        queuedCount = indication.getQueuedCount();
+        queuedBytes = indication.getQueuedBytes();
+        shardCount  = indication.getShardCount();
+        shardTime   = indication.getShardTime();
     }
 
     /**
@@ -181,18 +211,21 @@ public class Status implements Observer {
     }
 
     /**
-     * Handles a positive or negative monitor confirmation.
+     * Handles a positive or negative monitor confirmation, requesting the send
+     * queue reports once monitoring is allowed.
      *
      * @param  connection  the connection to the server.
      * @param  confirm     the monitor confirmation packet.
+     * @exception java.io.IOException  when an I/O error occurs.
      */
 
-    private void monitor(Connection connection, Monitor confirm) {
+    private void monitor(Connection connection, Monitor confirm) throws IOException {
         if (! confirm.isAllowed()) {
             System.err.println("Invalid administrative password.");
             connection.close();
             System.exit(1);
         }
+        connection.send(new QueueReport());
     }
 
     /**
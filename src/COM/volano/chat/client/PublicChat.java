@@ -187,6 +187,11 @@ public class PublicChat extends RoomFrame {
         focusPrev.put(talkText, userList);
         focusPrev.put(userList, listenText);
         focusPrev.put(listenText, status);
+
+        // Receive the users entering and leaving a normal room in batches.
+        if (roomType == RoomPacket.NORMAL) {
+            send(new Presence(groupName));
+        }
     }
 
     /**
@@ -537,6 +542,8 @@ public class PublicChat extends RoomFrame {
                         enterRoomIndication(connection, (EnterRoom) packet);
                     } else if (packet instanceof ExitRoom) {
                         exitRoomIndication(connection, (ExitRoom) packet);
+                    } else if (packet instanceof Presence) {
+                        presenceIndication(connection, (Presence) packet);
                     } else if (packet instanceof Beep) {
                         beepIndication(connection, (Beep) packet);
                     }
@@ -659,6 +666,43 @@ public class PublicChat extends RoomFrame {
         }
     }
 
+    /**
+     * Handles a presence indication, adding and removing the users who entered
+     * and left the room in the order given.  A batch may repeat a change this
+     * room already shows, such as a user listed when the room was entered, so
+     * users already in the list are not added again.  This user is removed
+     * from the room only by an exit room indication.
+     *
+     * @param connection  the connection to the server.
+     * @param indication  the presence indication.
+     */
+
+    private void presenceIndication(Connection connection, Presence indication) {
+        if (Build.UPDATE_TRACE) {
+            System.out.println(groupName + " presenceIndication ...");
+        }
+
+        indication.setHandled();
+        boolean[]  entered = indication.getEntered();
+        String[][] list    = indication.getUsers();
+        for (int i = 0; i < list.length; i++) {
+            String[] user = list[i];
+            String   name = user[RoomPacket.NAME];
+            if (name.length() != 0 && ! name.equals(userName)) {
+                if (entered[i] && getUser(name) == null) {
+                    count++;
+                    addUser(name, user[RoomPacket.PROFILE], user[RoomPacket.HOST], user[RoomPacket.MEMBER], user[RoomPacket.LINK]);
+                } else if (! entered[i] && getUser(name) != null) {
+                    count--;
+                    removeUser(name);
+                }
+            }
+        }
+        if (optionsMenu.countAlertCheckbox.getState()) {
+            status.setText(Message.format(value.textStatusRoomcount, new Integer(count)));
+        }
+    }
+
     /**
      * Handles a beep indication.
      *
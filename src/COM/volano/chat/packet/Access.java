@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  COM.volano.chat.Build;
 import  java.io.*;
 
@@ -417,23 +418,23 @@ public class Access extends Packet {
         super.writeTo(output);
         switch (getType()) {
         case REQUEST:
-            output.writeUTF(defaultRoom);
-            output.writeUTF(appletVersion);
-            output.writeUTF(documentBase);
-            output.writeUTF(codeBase);
-            output.writeUTF(javaVendor);
-            output.writeUTF(javaVendorUrl);
-            output.writeUTF(javaVersion);
-            output.writeUTF(javaClassVersion);
-            output.writeUTF(osName);
-            output.writeUTF(osVersion);
-            output.writeUTF(osArch);
+            UTFCodec.write(output, defaultRoom);
+            UTFCodec.write(output, appletVersion);
+            UTFCodec.write(output, documentBase);
+            UTFCodec.write(output, codeBase);
+            UTFCodec.write(output, javaVendor);
+            UTFCodec.write(output, javaVendorUrl);
+            UTFCodec.write(output, javaVersion);
+            UTFCodec.write(output, javaClassVersion);
+            UTFCodec.write(output, osName);
+            UTFCodec.write(output, osVersion);
+            UTFCodec.write(output, osArch);
             break;
         case CONFIRM:
             output.writeInt(result);
             output.writeInt(rooms.length);  // Keep this writeInt for version 2.1
             for (int i = 0; i < rooms.length; i++) {
-                output.writeUTF(rooms[i]);
+                UTFCodec.write(output, rooms[i]);
             }
             // Put this last for backward compatibility with 2.1 applets getting the
             // VERSION_DENIED result code.
@@ -461,24 +462,24 @@ public class Access extends Packet {
         super.readFrom(input);
         switch (getType()) {
         case REQUEST:
-            defaultRoom      = input.readUTF().trim();  // 2.1.10
-            appletVersion    = input.readUTF();
-            documentBase     = input.readUTF();
-            codeBase         = input.readUTF();
-            javaVendor       = input.readUTF();
-            javaVendorUrl    = input.readUTF();
-            javaVersion      = input.readUTF();
-            javaClassVersion = input.readUTF();
-            osName           = input.readUTF();
-            osVersion        = input.readUTF();
-            osArch           = input.readUTF();
+            defaultRoom      = UTFCodec.readTrimmed(input);  // 2.1.10
+            appletVersion    = UTFCodec.read(input);
+            documentBase     = UTFCodec.read(input);
+            codeBase         = UTFCodec.read(input);
+            javaVendor       = UTFCodec.read(input);
+            javaVendorUrl    = UTFCodec.read(input);
+            javaVersion      = UTFCodec.read(input);
+            javaClassVersion = UTFCodec.read(input);
+            osName           = UTFCodec.read(input);
+            osVersion        = UTFCodec.read(input);
+            osArch           = UTFCodec.read(input);
             break;
         case CONFIRM:
             result = input.readInt();
             int count = input.readInt();    // Keep this readInt for version 2.1
             rooms = new String[count];
             for (int i = 0; i < count; i++) {
-                rooms[i] = input.readUTF();
+                rooms[i] = UTFCodec.read(input);
             }
             // Put this last for backward compatibility with 2.1 applets getting the
             // VERSION_DENIED result code.
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 import  java.util.*;
 
@@ -203,7 +204,7 @@ public class Authenticate extends Packet {
             output.writeInt(result);
             output.writeInt(rooms.length);
             for (int i = 0; i < rooms.length; i++) {
-                output.writeUTF(rooms[i]);
+                UTFCodec.write(output, rooms[i]);
             }
             break;
         }
@@ -231,7 +232,7 @@ public class Authenticate extends Packet {
             int count = input.readInt();
             rooms = new String[count];
             for (int i = 0; i < count; i++) {
-                rooms[i] = input.readUTF();
+                rooms[i] = UTFCodec.read(input);
             }
             break;
         }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -158,9 +159,9 @@ public class Beep extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
-        output.writeUTF(fromName);
-        output.writeUTF(toName);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, fromName);
+        UTFCodec.write(output, toName);
     }
 
     /**
@@ -172,9 +173,9 @@ public class Beep extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName = input.readUTF();
+        roomName = UTFCodec.read(input);
         // 2.1.10 - The "from" user name is ignored.
-        fromName = input.readUTF();
-        toName   = input.readUTF();
+        fromName = UTFCodec.read(input);
+        toName   = UTFCodec.read(input);
     }
 }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -269,9 +270,9 @@ public class Chat extends Packet implements RoomPacket, PrivatePacket {
         super.writeTo(output);
         output.writeBoolean(question);
         output.writeInt(roomId);
-        output.writeUTF(roomName);
-        output.writeUTF(userName);
-        output.writeUTF(text);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, userName);
+        UTFCodec.write(output, text);
     }
 
     /**
@@ -285,8 +286,8 @@ public class Chat extends Packet implements RoomPacket, PrivatePacket {
         super.readFrom(input);
         question = input.readBoolean();
         roomId   = input.readInt();
-        roomName = input.readUTF();
-        userName = input.readUTF().trim();  // 2.1.10 - The user name is ignored.
-        text     = input.readUTF().trim();  // 2.1.10
+        roomName = UTFCodec.read(input);
+        userName = UTFCodec.readTrimmed(input);  // 2.1.10 - The user name is ignored.
+        text     = UTFCodec.readTrimmed(input);  // 2.1.10
     }
 }
@@ -41,6 +41,8 @@ import  COM.volano.net.PacketFactory;
  * COM.volano.chat.packet.Monitor
  * COM.volano.chat.packet.PasswordAccess
  * COM.volano.chat.packet.Ping
+ * COM.volano.chat.packet.Presence
+ * COM.volano.chat.packet.QueueReport
  * COM.volano.chat.packet.Report
  * COM.volano.chat.packet.RoomList
  * COM.volano.chat.packet.UserList
@@ -82,8 +84,12 @@ public class ChatPacketFactory extends PacketFactory {
             return new Monitor();
         case ChatPacketId.PACKET_PASSWORD_ACCESS:
             return new PasswordAccess();
+        case ChatPacketId.PACKET_PRESENCE:
+            return new Presence();
         case ChatPacketId.PACKET_PING:
             return new Ping();
+        case ChatPacketId.PACKET_QUEUE_REPORT:
+            return new QueueReport();
         case ChatPacketId.PACKET_REPORT:
             return new Report();
         case ChatPacketId.PACKET_ROOM_LIST:
@@ -53,5 +53,7 @@ public interface ChatPacketId {
     int PACKET_ROOM_LIST       = PacketFactory.START + Build.PACKET_ID_OFFSET + 15;
     int PACKET_USER_LIST       = PacketFactory.START + Build.PACKET_ID_OFFSET + 16;
     int PACKET_WHISPER         = PacketFactory.START + Build.PACKET_ID_OFFSET + 17;
+    int PACKET_PRESENCE        = PacketFactory.START + Build.PACKET_ID_OFFSET + 18;
+    int PACKET_QUEUE_REPORT    = PacketFactory.START + Build.PACKET_ID_OFFSET + 19;
 }
 
@@ -71,6 +71,8 @@ public class ClientPacketFactory extends PacketFactory {
 //      return new Monitor();
         case ChatPacketId.PACKET_PASSWORD_ACCESS:
             return new PasswordAccess();
+        case ChatPacketId.PACKET_PRESENCE:
+            return new Presence();
         case ChatPacketId.PACKET_PING:
             return new Ping();
 //    case ChatPacketId.PACKET_REPORT:
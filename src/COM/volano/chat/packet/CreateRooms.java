@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -90,7 +91,7 @@ public class CreateRooms extends Packet {
         super.writeTo(output);
         output.writeByte(roomNames.length);  // Less than 255 names
         for (int i = 0; i < roomNames.length; i++) {
-            output.writeUTF(roomNames[i]);
+            UTFCodec.write(output, roomNames[i]);
         }
     }
 
@@ -106,7 +107,7 @@ public class CreateRooms extends Packet {
         int count = input.readUnsignedByte();
         roomNames = new String[count];
         for (int i = 0; i < count; i++) {
-            roomNames[i] = input.readUTF();
+            roomNames[i] = UTFCodec.read(input);
             if (roomNames[i].length() > MAX_NAME) {
                 throw new IOException(NAME_TOO_BIG);
             }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -241,20 +242,20 @@ public class EnterPrivate extends Packet implements RoomPacket, PrivatePacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
-        output.writeUTF(fromName);
-        output.writeUTF(toName);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, fromName);
+        UTFCodec.write(output, toName);
         switch (getType()) {
         case INDICATION:
             output.writeInt(roomId);
-            output.writeUTF(fromHost);
-            output.writeUTF(fromProfile);
+            UTFCodec.write(output, fromHost);
+            UTFCodec.write(output, fromProfile);
             break;
 
         case CONFIRM:
             output.writeInt(roomId);
-            output.writeUTF(toHost);
-            output.writeUTF(toProfile);
+            UTFCodec.write(output, toHost);
+            UTFCodec.write(output, toProfile);
             break;
         }
     }
@@ -268,21 +269,21 @@ public class EnterPrivate extends Packet implements RoomPacket, PrivatePacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName    = input.readUTF();
+        roomName    = UTFCodec.read(input);
         // 2.1.10 - The "from" user name is ignored.
-        fromName    = input.readUTF();
-        toName      = input.readUTF();
+        fromName    = UTFCodec.read(input);
+        toName      = UTFCodec.read(input);
         switch (getType()) {
         case INDICATION:
             roomId      = input.readInt();
-            fromHost    = input.readUTF();
-            fromProfile = input.readUTF();
+            fromHost    = UTFCodec.read(input);
+            fromProfile = UTFCodec.read(input);
             break;
 
         case CONFIRM:
             roomId    = input.readInt();
-            toHost    = input.readUTF();
-            toProfile = input.readUTF();
+            toHost    = UTFCodec.read(input);
+            toProfile = UTFCodec.read(input);
             break;
         }
     }
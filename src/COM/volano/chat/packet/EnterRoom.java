@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -54,6 +55,7 @@ public class EnterRoom extends Packet implements RoomPacket {
     private int        roomType;          // Room type constants in RoomPacket
     private int        count;             // Room count (including audience)
     private String[][] users = new String[0][];
+    private byte[]     roster;            // Encoded list of users, if given
 
     /**
      * Sets the read pause for this class of objects.
@@ -182,6 +184,26 @@ public class EnterRoom extends Packet implements RoomPacket {
         this.users    = users;
     }
 
+    /**
+     * Changes this packet into a positive enter room confirmation with a list
+     * of users that is already encoded.
+     *
+     * @param result    the successful result code.
+     * @param roomType  the type of the room (normal or event).
+     * @param count     the count of people in the room, including the audience
+     *                  for event auditoriums.
+     * @param roster    the number of users followed by the name, profile,
+     *                  address, member flag, and link flag of each user, in
+     *                  the format written by this packet.
+     */
+
+    public void confirm(int result, int roomType, int count, byte[] roster) {
+        confirm(result);
+        this.roomType = roomType;
+        this.count    = count;
+        this.roster   = roster;
+    }
+
     /**
      * Gets the name of the room.
      *
@@ -293,27 +315,31 @@ public class EnterRoom extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(profile);
-        output.writeUTF(roomName);
-        output.writeUTF(userName);
+        UTFCodec.write(output, profile);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, userName);
         switch (getType()) {
         case INDICATION:
-            output.writeUTF(address);
-            output.writeUTF(member);
-            output.writeUTF(linked);
+            UTFCodec.write(output, address);
+            UTFCodec.write(output, member);
+            UTFCodec.write(output, linked);
             break;
 
         case CONFIRM:
             output.writeInt(result);
             output.writeInt(roomType);
             output.writeInt(count);
-            output.writeInt(users.length);
-            for (int i = 0; i < users.length; i++) {
-                output.writeUTF(users[i][NAME]);
-                output.writeUTF(users[i][PROFILE]);
-                output.writeUTF(users[i][HOST]);
-                output.writeUTF(users[i][MEMBER]);
-                output.writeUTF(users[i][LINK]);
+            if (roster != null) {
+                output.write(roster, 0, roster.length);
+            } else {
+                output.writeInt(users.length);
+                for (int i = 0; i < users.length; i++) {
+                    UTFCodec.write(output, users[i][NAME]);
+                    UTFCodec.write(output, users[i][PROFILE]);
+                    UTFCodec.write(output, users[i][HOST]);
+                    UTFCodec.write(output, users[i][MEMBER]);
+                    UTFCodec.write(output, users[i][LINK]);
+                }
             }
             break;
         }
@@ -328,14 +354,14 @@ public class EnterRoom extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        profile  = input.readUTF().trim();  // 2.1.10
-        roomName = input.readUTF();
-        userName = input.readUTF().trim();  // 2.1.10
+        profile  = UTFCodec.readTrimmed(input);  // 2.1.10
+        roomName = UTFCodec.read(input);
+        userName = UTFCodec.readTrimmed(input);  // 2.1.10
         switch (getType()) {
         case INDICATION:
-            address = input.readUTF();
-            member  = input.readUTF();
-            linked  = input.readUTF();
+            address = UTFCodec.read(input);
+            member  = UTFCodec.read(input);
+            linked  = UTFCodec.read(input);
             break;
 
         case CONFIRM:
@@ -345,11 +371,11 @@ public class EnterRoom extends Packet implements RoomPacket {
             int n     = input.readInt();
             users = new String[n][MAX_USERINFO];
             for (int i = 0; i < n; i++) {
-                users[i][NAME]    = input.readUTF();
-                users[i][PROFILE] = input.readUTF();
-                users[i][HOST]    = input.readUTF();
-                users[i][MEMBER]  = input.readUTF();
-                users[i][LINK]    = input.readUTF();
+                users[i][NAME]    = UTFCodec.read(input);
+                users[i][PROFILE] = UTFCodec.read(input);
+                users[i][HOST]    = UTFCodec.read(input);
+                users[i][MEMBER]  = UTFCodec.read(input);
+                users[i][LINK]    = UTFCodec.read(input);
             }
             break;
         }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -154,7 +155,7 @@ public class ExitPrivate extends Packet implements PrivatePacket {
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
         output.writeInt(roomId);
-        output.writeUTF(fromName);
+        UTFCodec.write(output, fromName);
     }
 
     /**
@@ -168,6 +169,6 @@ public class ExitPrivate extends Packet implements PrivatePacket {
         super.readFrom(input);
         roomId   = input.readInt();
         // 2.1.10 - The "from" user name is ignored.
-        fromName = input.readUTF();
+        fromName = UTFCodec.read(input);
     }
 }
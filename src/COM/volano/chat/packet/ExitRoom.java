@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -163,8 +164,8 @@ public class ExitRoom extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
-        output.writeUTF(userName);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, userName);
     }
 
     /**
@@ -176,8 +177,8 @@ public class ExitRoom extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName = input.readUTF();
+        roomName = UTFCodec.read(input);
         // 2.1.10 - The user name is ignored.
-        userName = input.readUTF();
+        userName = UTFCodec.read(input);
     }
 }
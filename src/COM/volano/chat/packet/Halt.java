@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -102,7 +103,7 @@ public class Halt extends Packet {
         super.writeTo(output);
         switch (getType()) {
         case REQUEST:
-            output.writeUTF(password);
+            UTFCodec.write(output, password);
             break;
         case CONFIRM:
             output.writeBoolean(allowed);
@@ -121,7 +122,7 @@ public class Halt extends Packet {
         super.readFrom(input);
         switch (getType()) {
         case REQUEST:
-            password = input.readUTF();
+            password = UTFCodec.read(input);
             break;
         case CONFIRM:
             allowed = input.readBoolean();
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -179,10 +180,10 @@ public class Kick extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
-        output.writeUTF(kickerName);
-        output.writeUTF(userName);
-        output.writeUTF(userAddress);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, kickerName);
+        UTFCodec.write(output, userName);
+        UTFCodec.write(output, userAddress);
         output.writeInt(method);
     }
 
@@ -195,11 +196,11 @@ public class Kick extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName    = input.readUTF();
+        roomName    = UTFCodec.read(input);
         // 2.1.10 - The "kicker" user name is ignored.
-        kickerName  = input.readUTF();
-        userName    = input.readUTF();
-        userAddress = input.readUTF();
+        kickerName  = UTFCodec.read(input);
+        userName    = UTFCodec.read(input);
+        userAddress = UTFCodec.read(input);
         method      = input.readInt();
     }
 }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -116,7 +117,7 @@ public class Monitor extends Packet {
         super.writeTo(output);
         switch (getType()) {
         case REQUEST:
-            output.writeUTF(password);
+            UTFCodec.write(output, password);
             output.writeInt(interval);
             break;
         case CONFIRM:
@@ -136,7 +137,7 @@ public class Monitor extends Packet {
         super.readFrom(input);
         switch (getType()) {
         case REQUEST:
-            password = input.readUTF();
+            password = UTFCodec.read(input);
             interval = input.readInt();
             break;
         case CONFIRM:
@@ -17,6 +17,7 @@
  */
 
 package COM.volano.chat.packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -245,14 +246,14 @@ public class PasswordAccess extends Access {
             output.writeBoolean(member);
             output.writeBoolean(monitor);
             output.writeBoolean(admin);
-            output.writeUTF(memberName);
-            output.writeUTF(memberPassword);
-            output.writeUTF(password);
+            UTFCodec.write(output, memberName);
+            UTFCodec.write(output, memberPassword);
+            UTFCodec.write(output, password);
             output.writeBoolean(stage);
-            output.writeUTF(topic);
+            UTFCodec.write(output, topic);
             break;
         case CONFIRM:
-            output.writeUTF(profile);
+            UTFCodec.write(output, profile);
             break;
         }
     }
@@ -271,14 +272,14 @@ public class PasswordAccess extends Access {
             member         = input.readBoolean();
             monitor        = input.readBoolean();
             admin          = input.readBoolean();
-            memberName     = input.readUTF();
-            memberPassword = input.readUTF();
-            password       = input.readUTF();
+            memberName     = UTFCodec.read(input);
+            memberPassword = UTFCodec.read(input);
+            password       = UTFCodec.read(input);
             stage          = input.readBoolean();
-            topic          = input.readUTF();
+            topic          = UTFCodec.read(input);
             break;
         case CONFIRM:
-            profile        = input.readUTF();
+            profile        = UTFCodec.read(input);
             break;
         }
     }
@@ -0,0 +1,214 @@
+/*
+ * Presence.java - a packet for the users entering and leaving a room.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.packet;
+import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
+import  java.io.*;
+
+/**
+ * This class encapsulates a presence request and indication.  A client sends
+ * the request after entering a room to receive the users entering and leaving
+ * the room in batches.  The server then sends an indication listing, in order,
+ * the users who entered or left the room during a short interval, in place of
+ * a separate enter room or exit room indication for each one.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ */
+
+public class Presence extends Packet implements RoomPacket {
+    private static long readPause  = 0L;    // Pause after reading
+    private static long writePause = 0L;    // Pause after writing
+
+    private String     roomName;
+    private boolean[]  entered;     // True for a user entering, false for leaving
+    private String[][] users;       // Name, profile, address, member, and link
+    private boolean    includeHost; // Write the address of users entering
+
+    /**
+     * Sets the read pause for this class of objects.
+     *
+     * @param pause the pause, in milliseconds, after reading an object of this
+     *              class.
+     */
+
+    public static void setReadPause(long pause) {
+        readPause = pause;
+    }
+
+    /**
+     * Sets the write pause for this class of objects.
+     *
+     * @param pause the pause, in milliseconds, after writing an object of this
+     *              class.
+     */
+
+    public static void setWritePause(long pause) {
+        writePause = pause;
+    }
+
+    /**
+     * Gets the read pause for this object.
+     *
+     * @return the pause, in milliseconds, after reading this object.
+     */
+
+    public long getReadPause() {
+        return readPause;
+    }
+
+    /**
+     * Gets the write pause for this object.
+     *
+     * @return the pause, in milliseconds, after writing this object.
+     */
+
+    public long getWritePause() {
+        return writePause;
+    }
+
+    /**
+     * The no-arg constructor required for deserialization.
+     */
+
+    public Presence() {}
+
+    /**
+     * Creates a presence request packet.
+     *
+     * @param roomName  the name of the room entered.
+     */
+
+    public Presence(String roomName) {
+        this.roomName = roomName;
+    }
+
+    /**
+     * Gets the integer identifier of this packet.
+     *
+     * @return the packet id.
+     */
+
+    public int getId() {
+        return ChatPacketId.PACKET_PRESENCE;
+    }
+
+    /**
+     * Changes this packet into a presence indication.
+     *
+     * @param entered      for each user, <code>true</code> if the user entered
+     *                     the room, or <code>false</code> if the user left.
+     * @param users        for each user, the name, profile, address, member
+     *                     flag, and link flag of a user entering, or only the
+     *                     name of a user leaving.
+     * @param includeHost  <code>true</code> to include the address of each user
+     *                     entering; otherwise <code>false</code>.
+     */
+
+    public void indication(boolean[] entered, String[][] users, boolean includeHost) {
+        setType(INDICATION);
+        this.entered     = entered;
+        this.users       = users;
+        this.includeHost = includeHost;
+    }
+
+    /**
+     * Gets the name of the room.
+     *
+     * @returns the room name.
+     */
+
+    public String getRoomName() {
+        return roomName;
+    }
+
+    /**
+     * Gets whether each user entered or left the room.
+     *
+     * @return for each user, <code>true</code> if the user entered the room, or
+     *         <code>false</code> if the user left.
+     */
+
+    public boolean[] getEntered() {
+        return entered;
+    }
+
+    /**
+     * Gets the users who entered or left the room, in order.
+     *
+     * @return for each user, the name, profile, address, member flag, and link
+     *         flag of a user entering, or only the name of a user leaving.
+     */
+
+    public String[][] getUsers() {
+        return users;
+    }
+
+    /**
+     * Serializes this object to a data output stream.
+     *
+     * @param output  the data output stream for serializing this object.
+     * @exception java.io.IOException  if an I/O error occurs.
+     */
+
+    public void writeTo(DataOutputStream output) throws IOException {
+        super.writeTo(output);
+        UTFCodec.write(output, roomName);
+        if (getType() == INDICATION) {
+            output.writeInt(users.length);
+            for (int i = 0; i < users.length; i++) {
+                output.writeBoolean(entered[i]);
+                UTFCodec.write(output, users[i][NAME]);
+                if (entered[i]) {
+                    UTFCodec.write(output, users[i][PROFILE]);
+                    UTFCodec.write(output, includeHost ? users[i][HOST] : "");
+                    UTFCodec.write(output, users[i][MEMBER]);
+                    UTFCodec.write(output, users[i][LINK]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Deserializes this object from a data input stream.
+     *
+     * @param input  the data input stream for deserializing this object.
+     * @exception java.io.IOException  if an I/O error occurs.
+     */
+
+    public void readFrom(DataInputStream input) throws IOException {
+        super.readFrom(input);
+        roomName = UTFCodec.read(input);
+        if (getType() == INDICATION) {
+            int count = input.readInt();
+            entered = new boolean[count];
+            users   = new String[count][MAX_USERINFO];
+            for (int i = 0; i < count; i++) {
+                entered[i]     = input.readBoolean();
+                users[i][NAME] = UTFCodec.read(input);
+                if (entered[i]) {
+                    users[i][PROFILE] = UTFCodec.read(input);
+                    users[i][HOST]    = UTFCodec.read(input);
+                    users[i][MEMBER]  = UTFCodec.read(input);
+                    users[i][LINK]    = UTFCodec.read(input);
+                }
+            }
+        }
+    }
+}
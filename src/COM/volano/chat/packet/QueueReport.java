@@ -0,0 +1,150 @@
+/*
+ * QueueReport.java - a packet for reporting the send queue depth.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.packet;
+import  COM.volano.net.Packet;
+import  java.io.*;
+
+/**
+ * This class encapsulates a send queue report request and indication.  A
+ * status client sends the request after its monitor request is confirmed to
+ * receive an indication of the packets and bytes waiting to be sent just
+ * before each status report, along with the number of shards of parallel
+ * broadcasts queued and the time taken to queue them.  Clients that do not
+ * send the request receive only the status reports.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ */
+
+public class QueueReport extends Packet {
+    private int  queuedCount;
+    private long queuedBytes;
+    private long shardCount;
+    private long shardTime;
+
+    /**
+     * The no-arg constructor required for deserialization, and for creating the
+     * send queue report request.
+     */
+
+    public QueueReport() {}
+
+    /**
+     * Creates a send queue report indication.
+     *
+     * @param queuedCount  the number of packets waiting to be sent.
+     * @param queuedBytes  the number of bytes waiting to be sent.
+     * @param shardCount   the number of broadcast shards queued in parallel.
+     * @param shardTime    the time taken to queue the shards, in nanoseconds.
+     */
+
+    public QueueReport(int queuedCount, long queuedBytes, long shardCount, long shardTime) {
+        setType(INDICATION);
+        this.queuedCount = queuedCount;
+        this.queuedBytes = queuedBytes;
+        this.shardCount  = shardCount;
+        this.shardTime   = shardTime;
+    }
+
+    /**
+     * Gets the integer identifier of this packet.
+     *
+     * @return the packet id.
+     */
+
+    public int getId() {
+        return ChatPacketId.PACKET_QUEUE_REPORT;
+    }
+
+    /**
+     * Gets the number of packets waiting in the send queues of all connections.
+     *
+     * @returns the send queue depth in packets.
+     */
+
+    public int getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * Gets the number of bytes waiting in the send queues of all connections.
+     *
+     * @returns the send queue depth in bytes.
+     */
+
+    public long getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    /**
+     * Gets the number of shards of parallel broadcasts queued since the server
+     * started.
+     *
+     * @returns the shard count.
+     */
+
+    public long getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * Gets the total time taken to queue the shards of parallel broadcasts on
+     * their connections since the server started.
+     *
+     * @returns the shard time in nanoseconds.
+     */
+
+    public long getShardTime() {
+        return shardTime;
+    }
+
+    /**
+     * Serializes this object to a data output stream.
+     *
+     * @param output  the data output stream for serializing this object.
+     * @exception java.io.IOException  if an I/O error occurs.
+     */
+
+    public void writeTo(DataOutputStream output) throws IOException {
+        super.writeTo(output);
+        if (getType() == INDICATION) {
+            output.writeInt(queuedCount);
+            output.writeLong(queuedBytes);
+            output.writeLong(shardCount);
+            output.writeLong(shardTime);
+        }
+    }
+
+    /**
+     * Deserializes this object from a data input stream.
+     *
+     * @param input  the data input stream for deserializing this object.
+     * @exception java.io.IOException  if an I/O error occurs.
+     */
+
+    public void readFrom(DataInputStream input) throws IOException {
+        super.readFrom(input);
+        if (getType() == INDICATION) {
+            queuedCount = input.readInt();
+            queuedBytes = input.readLong();
+            shardCount  = input.readLong();
+            shardTime   = input.readLong();
+        }
+    }
+}
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 import  java.util.*;
 
@@ -146,10 +147,10 @@ public class RoomList extends Packet {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(filter);
+        UTFCodec.write(output, filter);
         output.writeInt(rooms.length);
         for (int i = 0; i < rooms.length; i++) {
-            output.writeUTF(rooms[i]);
+            UTFCodec.write(output, rooms[i]);
         }
     }
 
@@ -162,11 +163,11 @@ public class RoomList extends Packet {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        filter = input.readUTF();
+        filter = UTFCodec.read(input);
         int count = input.readInt();
         rooms = new String[count];
         for (int i = 0; i < count; i++) {
-            rooms[i] = input.readUTF();
+            rooms[i] = UTFCodec.read(input);
         }
     }
 }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 import  java.util.*;
 
@@ -45,6 +46,7 @@ public class UserList extends Packet implements RoomPacket {
     private int        roomType;          // Room type constants in RoomPacket
     private String     documentBase = "";
     private String[][] users        = new String[0][];
+    private byte[]     roster;            // Encoded list of users, if given
 
     /**
      * Sets the read pause for this class of objects.
@@ -143,6 +145,27 @@ public class UserList extends Packet implements RoomPacket {
         this.users        = users;
     }
 
+    /**
+     * Changes this packet into a positive user list confirmation with a list of
+     * users that is already encoded.
+     *
+     * @param result        the successful result code.
+     * @param roomType      the type of the room (normal or event).
+     * @param documentBase  the referring Web page through which this room was
+     *                      created, or an empty string if this is a permanent
+     *                      room.
+     * @param roster        the number of users followed by the name, profile,
+     *                      address, member flag, and link flag of each user, in
+     *                      the format written by this packet.
+     */
+
+    public void confirm(int result, int roomType, String documentBase, byte[] roster) {
+        confirm(result);
+        this.roomType     = roomType;
+        this.documentBase = documentBase;
+        this.roster       = roster;
+    }
+
     /**
      * Gets the confirmation result code.
      *
@@ -206,18 +229,22 @@ public class UserList extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
+        UTFCodec.write(output, roomName);
         if (getType() == CONFIRM) {
             output.writeInt(result);
             output.writeInt(roomType);
-            output.writeUTF(documentBase);
-            output.writeInt(users.length);
-            for (int i = 0; i < users.length; i++) {
-                output.writeUTF(users[i][NAME]);
-                output.writeUTF(users[i][PROFILE]);
-                output.writeUTF(users[i][HOST]);
-                output.writeUTF(users[i][MEMBER]);
-                output.writeUTF(users[i][LINK]);
+            UTFCodec.write(output, documentBase);
+            if (roster != null) {
+                output.write(roster, 0, roster.length);
+            } else {
+                output.writeInt(users.length);
+                for (int i = 0; i < users.length; i++) {
+                    UTFCodec.write(output, users[i][NAME]);
+                    UTFCodec.write(output, users[i][PROFILE]);
+                    UTFCodec.write(output, users[i][HOST]);
+                    UTFCodec.write(output, users[i][MEMBER]);
+                    UTFCodec.write(output, users[i][LINK]);
+                }
             }
         }
     }
@@ -231,19 +258,19 @@ public class UserList extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName = input.readUTF();
+        roomName = UTFCodec.read(input);
         if (getType() == CONFIRM) {
             result       = input.readInt();
             roomType     = input.readInt();
-            documentBase = input.readUTF();
+            documentBase = UTFCodec.read(input);
             int count    = input.readInt();
             users        = new String[count][MAX_USERINFO];
             for (int i = 0; i < count; i++) {
-                users[i][NAME]    = input.readUTF();
-                users[i][PROFILE] = input.readUTF();
-                users[i][HOST]    = input.readUTF();
-                users[i][MEMBER]  = input.readUTF();
-                users[i][LINK]    = input.readUTF();
+                users[i][NAME]    = UTFCodec.read(input);
+                users[i][PROFILE] = UTFCodec.read(input);
+                users[i][HOST]    = UTFCodec.read(input);
+                users[i][MEMBER]  = UTFCodec.read(input);
+                users[i][LINK]    = UTFCodec.read(input);
             }
         }
     }
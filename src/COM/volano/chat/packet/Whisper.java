@@ -18,6 +18,7 @@
 
 package COM.volano.chat.packet;
 import  COM.volano.net.Packet;
+import  COM.volano.net.UTFCodec;
 import  java.io.*;
 
 /**
@@ -127,10 +128,10 @@ public class Whisper extends Packet implements RoomPacket {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(roomName);
-        output.writeUTF(fromName);
-        output.writeUTF(toName);
-        output.writeUTF(text);
+        UTFCodec.write(output, roomName);
+        UTFCodec.write(output, fromName);
+        UTFCodec.write(output, toName);
+        UTFCodec.write(output, text);
     }
 
     /**
@@ -142,10 +143,10 @@ public class Whisper extends Packet implements RoomPacket {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        roomName = input.readUTF();
+        roomName = UTFCodec.read(input);
         // 2.1.10 - The "from" user name is ignored on the request.
-        fromName = input.readUTF();
-        toName   = input.readUTF();
-        text     = input.readUTF();
+        fromName = UTFCodec.read(input);
+        toName   = UTFCodec.read(input);
+        text     = UTFCodec.read(input);
     }
 }
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.server;
 
+import COM.volano.net.AddressTrie;
 import java.io.*;
 import java.net.*;
 import java.util.*;
@@ -26,6 +27,14 @@ import java.util.*;
  * This class performs the host and referrer access control along with the host
  * banning operations.
  *
+ * <p>The hosts allowed, denied, and banned are compiled into a single table of
+ * network address blocks, which is rebuilt and replaced whenever one of the
+ * lists changes.  A block is written as an IPv4 or IPv6 address followed by a
+ * slash and the number of bits in its network prefix, such as
+ * <code>192.168.0.0/16</code>.  An IPv4 address without a prefix length is
+ * taken as the block of the octets before its trailing zeros, so
+ * <code>172.178.0.0</code> is the same as <code>172.178.0.0/16</code>.
+ *
  * @author  John Neffenger
  * @version 2.5
  * @since   1.0
@@ -35,9 +44,14 @@ import java.util.*;
 class AccessControl {
     private static final int    IPV4_ADDRESS_BUFFER    = 16;
     private static final String IPV4_ADDRESS_SEPARATOR = ".";
-    private static final String URL_PATH_SEPARATOR     = "/";
-    private static final String URL_PROTOCOL_SUFFIX    = ":";
-    private static final String URL_AUTHORITY_PREFIX   = "//";
+    private static final String PREFIX_SEPARATOR       = "/";
+    private static final String IPV6_SEPARATOR         = ":";
+    private static final int    IPV4_ADDRESS_LENGTH    = 4;
+
+    // Flags of the blocks in the compiled host table.
+    private static final int ALLOWED = 1;
+    private static final int DENIED  = 2;
+    private static final int BANNED  = 4;
 
     private static Properties hostsAllowed     = new Properties();
     private static Properties hostsDenied      = new Properties();
@@ -45,6 +59,10 @@ class AccessControl {
     private static Properties referrersDenied  = new Properties();
     private static Hashtable  hostsBanned      = new Hashtable();
 
+    private static volatile AddressTrie hosts = new AddressTrie();  // Compiled host lists
+    private static Object               compileLock = new Object();   // Builds one table at a time
+    private static volatile ReferrerTable referrers = new ReferrerTable(referrersAllowed, referrersDenied);
+
     /**
      * Gets the string representation of an IPv4 address.
      *
@@ -93,91 +111,169 @@ class AccessControl {
     }
 
     /**
-     * Gets the score of the host address in the specified table.  The score is
-     * equal to the number of component parts of the network address that are
-     * found in the table.  For example, if the address to check is
-     * <code>172.178.214.202</code>, an entry found in the table of:
-     * <li>
-     * <ul><code>172.178.214.202</code> scores 4,</ul>
-     * <ul><code>172.178.214.0</code> scores 3,</ul>
-     * <ul><code>172.178.0.0</code> scores 2,</ul>
-     * <ul><code>172.0.0.0</code> scores 1, and</ul>
-     * <ul><code>0.0.0.0</code> scores 0.</ul>.
-     * </li>
-     * <p>A score of -1 is returned when no entry is found.
+     * Parses the string representation of a numeric IP address without looking
+     * up any host name.
      *
-     * @param table the table whose keys contain a list of host addresses or
-     *        network blocks.
-     * @param host the base address to use for constructing lookup addresses.
-     * @return the score of the address based on how many components were found
-     *         as a key entry in the table, or -1 if no lookup address was found.
+     * @param address the IPv4 address in the format <code>d.d.d.d</code>, or
+     *        the IPv6 address in any of its text formats.
+     * @return the address in network byte order, or <code>null</code> if the
+     *         string is not a numeric IP address.
      */
 
-    private static int getScore(Hashtable table, InetAddress host) {
-        byte[] address = host.getAddress();
-        int score = -1;
-        boolean found = false;
-        for (int i = address.length; i >= 0 && !found; i--) {   // i = 4    i = 3    i = 2    i = 1    i = 0
-            if (i < address.length) {
-                address[i] = 0;    // a.b.c.d  a.b.c.0  a.b.0.0  a.0.0.0  0.0.0.0
+    static byte[] parseAddress(String address) {
+        if (address.indexOf(IPV6_SEPARATOR) != -1) {
+            try {
+                return InetAddress.getByName(address).getAddress();  // Literal, so no lookup
+            } catch (UnknownHostException e) {
+                return null;
+            } catch (SecurityException e) {
+                return null;
             }
-            found = table.containsKey(getByAddress(address));
-            if (found) {
-                score = i;    // s = 4    s = 3    s = 2    s = 1    s = 0
+        }
+        byte[] bytes = new byte[IPV4_ADDRESS_LENGTH];
+        int    index = 0;
+        int    value = -1;
+        for (int i = 0; i < address.length(); i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value == -1 ? 0 : value * 10) + (c - '0');
+                if (value > 255) {
+                    return null;
+                }
+            } else if (c == '.' && value != -1 && index < bytes.length - 1) {
+                bytes[index++] = (byte) value;
+                value = -1;
+            } else {
+                return null;
             }
         }
-        return score;
+        if (value == -1 || index != bytes.length - 1) {
+            return null;
+        }
+        bytes[index] = (byte) value;
+        return bytes;
     }
 
     /**
-     * Gets the score of the referring URL in the specified table.  The score is
-     * equal to the length of the longest URL component string that is found in
-     * the table.  For example, if the URL to check is
-     * <code>http://www.volano.com/vcclient/chat.html</code>, an entry found in
-     * the table of:
-     * <li>
-     * <ul><code>http://www.volano.com/vcclient/chat.html</code> scores 40,</ul>
-     * <ul><code>http://www.volano.com/vcclient</code> scores 30, and</ul>
-     * <ul><code>http://www.volano.com</code> scores 21.</ul>
-     * </li>
-     * <p>A score of -1 is returned when no entry is found.
+     * Parses a numeric address, with or without a prefix length, into a block
+     * of addresses.  An IPv4 address without a prefix length ending in zeros
+     * is the block of addresses it is the network address of.
      *
-     * <p>A URL can be constructed from the following methods and strings, where
-     * the methods shown in brackets can return <code>null</code>.
-     * <pre>
-     * getProtocol() ":" ["//" getAuthority()] [getFile()] ["#" getRef()]
-     * </pre>
+     * @param block the host address or network block.
+     * @param length the array whose first element receives the number of bits
+     *        in the network prefix of the block.
+     * @return the address in network byte order, or <code>null</code> if the
+     *         string is not a valid block of addresses.
+     */
+
+    private static byte[] parseBlock(String block, int[] length) {
+        block = block.trim();
+        int    index   = block.indexOf(PREFIX_SEPARATOR);
+        byte[] address = parseAddress(index == -1 ? block : block.substring(0, index));
+        if (address != null) {
+            length[0] = address.length * 8;
+            if (index != -1) {
+                try {
+                    length[0] = Integer.parseInt(block.substring(index + 1));
+                } catch (NumberFormatException e) {
+                    length[0] = -1;
+                }
+            } else if (address.length == IPV4_ADDRESS_LENGTH) {
+                while (length[0] > 0 && address[length[0] / 8 - 1] == 0) {
+                    length[0] -= 8;    // a.b.0.0 is the block a.b.0.0/16
+                }
+            }
+            if (length[0] < 0 || length[0] > address.length * 8) {
+                address = null;
+            }
+        }
+        return address;
+    }
+
+    /**
+     * Adds the blocks of addresses in the specified table to a host table.  A
+     * key of the table that is not a numeric address, with or without a valid
+     * prefix length, is skipped.
      *
-     * <p>The following example illustrates all parts of a URL:
-     * <pre>
-     * http://user@www.example.com:8080/servlet/document?for=one&by=two#section1
-     * </pre>
+     * @param trie the host table being compiled.
+     * @param table the table whose keys contain a list of host addresses or
+     *        network blocks.
+     * @param flags the flags for the blocks of the table.
+     */
+
+    private static void addHosts(AddressTrie trie, Hashtable table, int flags) {
+        int[]       length      = new int[1];
+        Enumeration enumeration = table.keys();
+        while (enumeration.hasMoreElements()) {
+            byte[] address = parseBlock((String) enumeration.nextElement(), length);
+            if (address != null) {
+                trie.put(address, length[0], flags);
+            }
+        }
+    }
+
+    /**
+     * Compiles the hosts allowed, denied, and banned into a new host table
+     * and replaces the current one, so that checks in progress finish with the
+     * table they started with.  This method must not be called while holding
+     * the lock of the banned host table.
+     */
+
+    static void compileHosts() {
+        synchronized (compileLock) {
+            AddressTrie trie = new AddressTrie();
+            addHosts(trie, hostsAllowed, ALLOWED);
+            addHosts(trie, hostsDenied, DENIED);
+            addHosts(trie, hostsBanned, BANNED);
+            hosts = trie;
+        }
+    }
+
+    /**
+     * Adds a banned host address or network block to the host table.  Only the
+     * path to the block in the table is copied, so the table need not be
+     * compiled again.
+     *
+     * @param block the banned address or network block.
+     */
+
+    static void addBannedHost(String block) {
+        int[]  length  = new int[1];
+        byte[] address = parseBlock(block, length);
+        if (address != null) {
+            synchronized (compileLock) {
+                hosts = hosts.withBlock(address, length[0], BANNED);
+            }
+        }
+    }
+
+    /**
+     * Removes a banned host address or network block from the host table.
+     * Each banned address or network block is a different block of addresses,
+     * so no other ban is lifted with it.
      *
-     * @param table the table whose keys contain a list of referring URLs or URL
-     *        fragments.
-     * @param host the base URL to use for constructing lookup URLs.
-     * @return the score of the URL based on the length of the URL's fragment
-     *         found as a key entry in the table, or -1 if no fragment was found.
+     * @param block the address or network block no longer banned.
      */
 
-    private static int getScore(Hashtable table, URL referrer) {
-        String protocol = referrer.getProtocol();
-        String minSpec  = protocol + URL_PROTOCOL_SUFFIX + URL_AUTHORITY_PREFIX;
-        int minIndex = minSpec.length() - 1;
-
-        String  spec  = referrer.toString();
-        boolean found = table.containsKey(spec) || table.containsKey(spec + URL_PATH_SEPARATOR);
-        int     index = spec.lastIndexOf(URL_PATH_SEPARATOR);
-        while (!found && index > minIndex) {
-            spec  = spec.substring(0, index); // Does not include trailing "/"
-            found = table.containsKey(spec) || table.containsKey(spec + URL_PATH_SEPARATOR);
-            index = spec.lastIndexOf(URL_PATH_SEPARATOR);
+    static void removeBannedHost(String block) {
+        int[]  length  = new int[1];
+        byte[] address = parseBlock(block, length);
+        if (address != null) {
+            synchronized (compileLock) {
+                hosts = hosts.withoutBlock(address, length[0], BANNED);
+            }
         }
-        if (!found) {
-            spec  = protocol + URL_PROTOCOL_SUFFIX;
-            found = table.containsKey(spec) || table.containsKey(spec + URL_AUTHORITY_PREFIX);
+    }
+
+    /**
+     * Compiles the referrers allowed and denied into a new referrer table and
+     * replaces the current one, discarding the cached decisions of the old one.
+     */
+
+    static void compileReferrers() {
+        synchronized (compileLock) {
+            referrers = new ReferrerTable(referrersAllowed, referrersDenied);
         }
-        return found ? spec.length() : -1;
     }
 
     /**
@@ -189,6 +285,7 @@ class AccessControl {
     static void loadHostsAllowed(InputStream stream) throws IOException {
         hostsAllowed.load(stream);
         stream.close();
+        compileHosts();
     }
 
     /**
@@ -200,6 +297,7 @@ class AccessControl {
     static void loadHostsDenied(InputStream stream) throws IOException {
         hostsDenied.load(stream);
         stream.close();
+        compileHosts();
     }
 
     /**
@@ -211,6 +309,7 @@ class AccessControl {
     static void loadReferrersAllowed(InputStream stream) throws IOException {
         referrersAllowed.load(stream);
         stream.close();
+        compileReferrers();
     }
 
     /**
@@ -222,6 +321,7 @@ class AccessControl {
     static void loadReferrersDenied(InputStream stream) throws IOException {
         referrersDenied.load(stream);
         stream.close();
+        compileReferrers();
     }
 
     /**
@@ -232,6 +332,7 @@ class AccessControl {
 
     static void setHostsBanned(Hashtable table) {
         hostsBanned = table;
+        compileHosts();
     }
 
     /**
@@ -301,22 +402,22 @@ class AccessControl {
     }
 
     /**
-     * Checks whether the specified host IP address is allowed access.
+     * Checks whether the specified host IP address is allowed access.  The
+     * longest block containing the address decides, and a host whose longest
+     * block is in both the allowed list and another list is allowed.  A host
+     * in no block at all is allowed.
      *
      * @param address the IP address of the host to check.
      * @return true if the host is allowed access; otherwise false.
      */
 
     static boolean isHostAllowed(String address) {
-        boolean isAllowed = false;
-        try {
-            InetAddress host = InetAddress.getByName(address);
-            int allowScore = getScore(hostsAllowed, host);
-            int denyScore = getScore(hostsDenied, host);
-            int banScore = getScore(hostsBanned, host);
-            isAllowed = allowScore >= denyScore && allowScore >= banScore;
-        } catch (UnknownHostException e) {}
-        return isAllowed;
+        byte[] host = parseAddress(address);
+        if (host == null) {
+            return false;
+        }
+        int flags = hosts.get(host);
+        return flags == 0 || (flags & ALLOWED) != 0;
     }
 
     /**
@@ -327,19 +428,7 @@ class AccessControl {
      */
 
     static boolean isReferrerAllowed(String url) {
-        boolean isAllowed = false;
-        try {
-            // Watch out -- https protocol throws:
-            //   java.net.MalformedURLException: unknown protocol: https
-            // when using Java 1.3.  Java 1.4 supports https URLs.
-            URL referrer = new URL(url.toLowerCase());
-            int allowScore = getScore(referrersAllowed, referrer);
-            int denyScore = getScore(referrersDenied, referrer);
-            isAllowed = allowScore >= denyScore;
-        }
-        // We should be logging these so we catch errors like "https".
-        catch (MalformedURLException e) {}
-        return isAllowed;
+        return referrers.isAllowed(url);
     }
 
     /**
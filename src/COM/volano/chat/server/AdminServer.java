@@ -46,6 +46,7 @@ class AdminServer implements Runnable, Observer {
     private ServerSocket   serverSocket;
     private Thread         listener;
     private Vector         clientList = new Vector();
+    private Vector         queueList  = new Vector();   // Clients receiving queue reports
 
     /**
      * Creates a new administrative server.
@@ -105,6 +106,7 @@ class AdminServer implements Runnable, Observer {
         //     reporter = null;
         //   }
         // }
+        queueList.removeElement(connection);
         if (clientList.removeElement(connection)) {
             if (clientList.size() == 0) {
                 reporter.deleteObserver(this);
@@ -112,6 +114,19 @@ class AdminServer implements Runnable, Observer {
         }
     }
 
+    /**
+     * Adds the given client connection to the list of connections receiving
+     * send queue reports, if the client is receiving status reports.
+     *
+     * @param connection  the connection to add.
+     */
+
+    private synchronized void addQueueClient(Connection connection) {
+        if (clientList.contains(connection) && ! queueList.contains(connection)) {
+            queueList.addElement(connection);
+        }
+    }
+
     /**
      * Gets the list of clients to receive status reports.
      *
@@ -122,6 +137,16 @@ class AdminServer implements Runnable, Observer {
         return clientList.toArray();
     }
 
+    /**
+     * Gets the list of clients to receive send queue reports.
+     *
+     * @return  the list of connections to clients receiving queue reports.
+     */
+
+    private synchronized Object[] getQueueClients() {
+        return queueList.toArray();
+    }
+
     /**
      * Broadcasts a packet to all clients receiving status reports.
      *
@@ -129,7 +154,17 @@ class AdminServer implements Runnable, Observer {
      */
 
     private void broadcast(Packet packet) {
-        Object[] list = getClients();
+        broadcast(getClients(), packet);
+    }
+
+    /**
+     * Broadcasts a packet to a list of clients.
+     *
+     * @param list    the list of connections to clients.
+     * @param packet  the packet to broadcast.
+     */
+
+    private void broadcast(Object[] list, Packet packet) {
         for (int i = 0; i < list.length; i++) {
             send((Connection) list[i], packet);
         }
@@ -217,11 +252,15 @@ class AdminServer implements Runnable, Observer {
         if (observable instanceof StatusReporter) {
             if (object instanceof Report) {
                 report((Report) object);
+            } else if (object instanceof QueueReport) {
+                broadcast(getQueueClients(), (QueueReport) object);
             }
         } else if (observable instanceof Connection) {
             Connection connection = (Connection) observable;
             if (object instanceof Monitor) {
                 monitor(connection, (Monitor) object);
+            } else if (object instanceof QueueReport) {
+                addQueueClient(connection);
             } else if (object instanceof Halt) {
                 halt(connection, (Halt) object);
             } else if (object == null) {
@@ -38,4 +38,6 @@ public interface Attr {
     String MEMBER_LINK  = "link";         // "true" or "false" for member link
     String RANDOM_BYTES = "random";       // Random byte array for signing
     String EXPECTED     = "expected";     // The packet expected next
+    String LOCK         = "lock";         // Lock for handling the connection off its receive thread
+    String IS_CLOSED    = "closed";       // Connection is closed and its rooms are released
 }
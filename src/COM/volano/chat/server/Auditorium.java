@@ -58,10 +58,11 @@ class Auditorium extends PublicChat {
      * @param documentBase  the Web address from which this room was created.
      */
 
-    Auditorium(Value value, Grouptable privateList, String groupName, String documentBase) {
+    Auditorium(Value value, PrivateList privateList, String groupName, String documentBase) {
         super(value, privateList, groupName, documentBase);
         this.roomType = RoomPacket.EVENT;
         this.audience = new Vector(INITIAL_AUDIENCE_SIZE);
+        this.presence = null;           // The audience is not listed
     }
 
     /**
@@ -91,21 +92,16 @@ class Auditorium extends PublicChat {
      *
      * @param origin  the origin of the packet and the one on which to avoid
      *                sending.
-     * @param packet  the packet to send to all users except for the packet's
-     *                origin.
+     * @param frame   the serialized packet to send to all users except for the
+     *                packet's origin.
      */
 
-    protected void broadcast(Connection origin, Packet packet) {
+    protected void broadcast(Connection origin, StreamableFrame frame) {
         // First send to those on stage.
-        super.broadcast(origin, packet);
+        super.broadcast(origin, frame);
 
-        // Then send to everyone in the audience.
-        Connection[] list = snapshot(audience);
-        for (int i = 0; i < list.length; i++) {
-            try {
-                list[i].send(packet);
-            } catch (IOException e) {} // Error means connection is closed -- ignore
-        }
+        // Then send to everyone in the audience, in parallel if it is large.
+        FanOut.send(snapshot(audience), null, frame, null);
     }
 
     /**
@@ -141,12 +137,12 @@ class Auditorium extends PublicChat {
             super.enterRoomRequest(connection, request);
         } else {
             request.setHandled();
-            connection.addObserver(this);
+            Dispatcher.add(connection, this);
             audience.addElement(connection);
             EnterRoom copy = (EnterRoom) request.clone();
             copy.audienceIndication();
             broadcast(connection, copy);
-            request.confirm(EnterRoom.OKAY, roomType, count(), getUserInfo(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
+            request.confirm(EnterRoom.OKAY, roomType, count(), getRoster(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
             send(connection, request);
         }
 
@@ -251,7 +247,7 @@ class Auditorium extends PublicChat {
             super.exitRoomRequest(connection, request);
         } else {
             request.setHandled();
-            connection.deleteObserver(this);
+            Dispatcher.remove(connection, this);
             request.audienceIndication();
             broadcast(connection, request);
             audience.removeElement(connection);
@@ -277,7 +273,7 @@ class Auditorium extends PublicChat {
         if (connection.getBoolean(Attr.IS_STAGE)) {
             super.nullObject(connection);
         } else {
-            connection.deleteObserver(this);
+            Dispatcher.remove(connection, this);
             ExitRoom packet = new ExitRoom(groupName, "");
             packet.audienceIndication();
             broadcast(connection, packet);
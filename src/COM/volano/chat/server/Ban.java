@@ -38,6 +38,7 @@ class Ban implements Cloneable {
     private String roomName;
     private String userName;
     private String monitorName;
+    private long expires = Long.MAX_VALUE;
 
     Ban(Date date, String address, String roomName, String userName, String monitorName) {
         this.date = date;
@@ -79,6 +80,14 @@ class Ban implements Cloneable {
         return monitorName;
     }
 
+    long getExpires() {
+        return expires;
+    }
+
+    void setExpires(long expires) {
+        this.expires = expires;
+    }
+
     public Object clone() {
         try {
             return super.clone();
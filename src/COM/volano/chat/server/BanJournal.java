@@ -0,0 +1,382 @@
+/*
+ * BanJournal.java - a memory-mapped journal of the banned addresses.
+ * Copyright (C) 1996-2002 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This class keeps the bans of the ban table in a file, so that they survive a
+ * restart of the server.  The file is a journal of records appended through a
+ * memory-mapped buffer, with one record for each ban added and one for each
+ * ban lifted before it expires.  Bans that expire need no record, since each
+ * added ban holds its expiration time.
+ *
+ * <p>Each record is its length followed by its contents, and the length is
+ * written only after the contents, so a record cut short by a crash reads as
+ * the end of the journal.  The journal is rewritten with only the bans in
+ * effect once the records no longer needed outnumber those bans.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Bantable
+ */
+
+class BanJournal {
+    private static final int    MAGIC           = 0x56434241;     // "VCBA"
+    private static final int    VERSION         = 1;
+    private static final int    HEADER_LENGTH   = 8;              // Magic and version
+    private static final int    INITIAL_LENGTH  = 64 * 1024;      // Initial size of the file
+    private static final String TEMP_SUFFIX     = ".tmp";
+    private static final int    MIN_COMPACT     = 1000;           // Fewest records to compact
+    private static final int    RECORD_ESTIMATE = 64;             // Typical bytes per record
+
+    // Types of records.
+    private static final byte ADD    = 1;
+    private static final byte REMOVE = 2;
+
+    private File             file;
+    private FileChannel      channel;
+    private MappedByteBuffer buffer;
+    private int              records;    // Number of records in the journal
+    private int              last;       // End of the last record when closed
+
+    /**
+     * Opens the ban journal, creating the file if it does not exist.
+     *
+     * @param file  the journal file.
+     * @exception java.io.IOException  if an I/O error occurs opening the file,
+     *            or if the file is not a ban journal.
+     */
+
+    BanJournal(File file) throws IOException {
+        this.file = file;
+        open();
+    }
+
+    /**
+     * Opens and maps the journal file, writing the header if the file is new.
+     *
+     * @exception java.io.IOException  if an I/O error occurs opening the file,
+     *            or if the file is not a ban journal.
+     */
+
+    private void open() throws IOException {
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        boolean isNew = channel.size() == 0;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), INITIAL_LENGTH));
+        if (isNew) {
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+        } else if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            channel.close();
+            throw new IOException(file.getPath());
+        }
+        records = 0;
+    }
+
+    /**
+     * Gets the journal file.
+     *
+     * @return  the file of this journal.
+     */
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the bans from the journal, leaving its position at the end of the
+     * last complete record for the next record to be appended.
+     *
+     * @param now  the current time, before which expired bans are skipped.
+     * @return  the table of bans in effect, where each key is the banned
+     *          address or network block and each value is its ban.
+     */
+
+    synchronized Hashtable read(long now) {
+        Hashtable bans    = new Hashtable(buffer.capacity() / RECORD_ESTIMATE);
+        Hashtable strings = new Hashtable();    // Shares the names repeated in bans
+        buffer.position(HEADER_LENGTH);
+        while (buffer.remaining() >= 4) {
+            int start  = buffer.position();
+            int length = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                buffer.position(start);
+                break;
+            }
+            int end = buffer.position() + length;
+            try {
+                byte   type    = buffer.get();
+                String address = getString();
+                if (type == ADD) {
+                    int    banType = buffer.get();
+                    long   date    = buffer.getLong();
+                    long   expires = buffer.getLong();
+                    String room    = share(strings, getString());
+                    String user    = share(strings, getString());
+                    String monitor = share(strings, getString());
+                    if (expires > now) {
+                        Ban ban = new Ban(new Date(date), address, room, user, monitor);
+                        ban.setType(banType);
+                        ban.setExpires(expires);
+                        bans.put(address, ban);
+                    } else {
+                        bans.remove(address);
+                    }
+                } else if (type == REMOVE) {
+                    bans.remove(address);
+                }
+            } catch (BufferUnderflowException e) {
+                buffer.position(start);     // Record is corrupt -- treat as end
+                break;
+            }
+            buffer.position(end);
+            records++;
+        }
+        return bans;
+    }
+
+    /**
+     * Appends a record of a ban added to the ban table.
+     *
+     * @param ban  the ban added.
+     * @exception java.io.IOException  if an I/O error occurs extending the file.
+     */
+
+    synchronized void add(Ban ban) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream      output = new DataOutputStream(bytes);
+        output.writeByte(ADD);
+        output.writeUTF(ban.getAddress());
+        output.writeByte(ban.getType());
+        output.writeLong(ban.getDate().getTime());
+        output.writeLong(ban.getExpires());
+        output.writeUTF(valueOf(ban.getRoomName()));
+        output.writeUTF(valueOf(ban.getUserName()));
+        output.writeUTF(valueOf(ban.getMonitorName()));
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Appends a record of a ban lifted before it expires.
+     *
+     * @param address  the banned address or network block.
+     * @exception java.io.IOException  if an I/O error occurs extending the file.
+     */
+
+    synchronized void remove(String address) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream      output = new DataOutputStream(bytes);
+        output.writeByte(REMOVE);
+        output.writeUTF(address);
+        append(bytes.toByteArray());
+    }
+
+    /**
+     * Checks whether the journal should be rewritten, which is when its records
+     * outnumber the bans in effect by more than two to one, ignoring journals
+     * too small to be worth rewriting.
+     *
+     * @param size  the number of bans in effect.
+     * @return  <code>true</code> if the journal should be compacted; otherwise
+     *          <code>false</code>.
+     */
+
+    synchronized boolean isCompactable(int size) {
+        return records > MIN_COMPACT && records > 2 * size;
+    }
+
+    /**
+     * Rewrites the journal with only the bans given.  The new journal is
+     * written to a temporary file, which then replaces the old one.  The bans
+     * must be taken from the ban table while holding the lock on this journal,
+     * so that no ban added or lifted in the meantime is left out of the new
+     * journal.  If the old file cannot be replaced, the journal carries on
+     * with the old file.
+     *
+     * @param bans  the bans in effect.
+     * @exception java.io.IOException  if an I/O error occurs writing the file.
+     */
+
+    synchronized void compact(Object[] bans) throws IOException {
+        File temp = new File(file.getPath() + TEMP_SUFFIX);
+        temp.delete();
+        BanJournal journal = new BanJournal(temp);
+        try {
+            for (int i = 0; i < bans.length; i++) {
+                journal.add((Ban) bans[i]);
+            }
+        } finally {
+            journal.close();
+        }
+        int     position = buffer.position();
+        int     count    = records;
+        boolean moved    = false;
+        try {
+            close();
+            move(temp, file);
+            position = journal.last;
+            count    = journal.records;
+            moved    = true;
+        } finally {
+            open();
+            buffer.position(position);
+            records = count;
+            if (! moved) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * Closes the journal after writing its changes to the file, releasing its
+     * memory mapping so that the file can be replaced.
+     *
+     * @exception java.io.IOException  if an I/O error occurs closing the file.
+     */
+
+    synchronized void close() throws IOException {
+        last = buffer.position();
+        buffer.force();
+        unmap(buffer);
+        buffer = null;
+        channel.close();
+    }
+
+    /**
+     * Appends a record to the journal, doubling the size of the file if the
+     * record does not fit.  The contents are written before the length, so the
+     * record is not read back unless it is complete.
+     *
+     * @param record  the contents of the record.
+     * @exception java.io.IOException  if an I/O error occurs extending the file.
+     */
+
+    private void append(byte[] record) throws IOException {
+        if (buffer.remaining() < record.length + 8) {   // Length of this and the next record
+            int position = buffer.position();
+            long length  = Math.max((long) buffer.capacity() * 2, (long) position + record.length + 8);
+            MappedByteBuffer larger = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            unmap(buffer);
+            buffer = larger;
+            buffer.position(position);
+        }
+        int start = buffer.position();
+        buffer.position(start + 4);
+        buffer.put(record);
+        buffer.putInt(start, record.length);
+        records++;
+    }
+
+    /**
+     * Replaces a file with another, atomically if the file system supports it.
+     *
+     * @param source  the new file.
+     * @param target  the file to be replaced.
+     * @exception java.io.IOException  if an I/O error occurs moving the file.
+     */
+
+    private static void move(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Releases the memory mapping of a buffer that is no longer used rather
+     * than leaving it until the buffer is garbage collected, since a file that
+     * is still mapped cannot be replaced on Windows.  Where the mapping cannot
+     * be released, it is left to the garbage collector.
+     *
+     * @param buffer  the mapped buffer, which must not be used afterwards.
+     */
+
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class unsafe = Class.forName("sun.misc.Unsafe");
+            Field field  = unsafe.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method method = unsafe.getMethod("invokeCleaner", new Class[] {ByteBuffer.class});
+            method.invoke(field.get(null), new Object[] {buffer});
+        } catch (Exception e) {}              // Not supported before Java 9
+    }
+
+    /**
+     * Gets a string to write to the journal.
+     *
+     * @param string  the string, or <code>null</code>.
+     * @return  the string, or the empty string if it is <code>null</code>.
+     */
+
+    private static String valueOf(String string) {
+        return string == null ? "" : string;
+    }
+
+    /**
+     * Gets the one copy of a string kept for all of the bans read from the
+     * journal, since the same room, user and monitor names appear in many bans.
+     *
+     * @param strings  the table of strings kept so far.
+     * @param string   the string to share.
+     * @return  the copy of the string kept in the table.
+     */
+
+    private static String share(Hashtable strings, String string) {
+        String shared = (String) strings.get(string);
+        if (shared == null) {
+            strings.put(string, string);
+            shared = string;
+        }
+        return shared;
+    }
+
+    /**
+     * Reads a string written by <code>DataOutput.writeUTF</code> from the
+     * buffer, decoding its modified UTF-8 characters in place rather than
+     * copying them through a stream.
+     *
+     * @return  the string.
+     * @exception java.nio.BufferUnderflowException  if the string extends past
+     *            the end of the buffer.
+     */
+
+    private String getString() {
+        int    length = buffer.getShort() & 0xffff;
+        int    end    = buffer.position() + length;
+        char[] chars  = new char[length];
+        int    count  = 0;
+        while (buffer.position() < end) {
+            int c = buffer.get() & 0xff;
+            if (c >= 0xe0) {
+                c = (c & 0x0f) << 12 | (buffer.get() & 0x3f) << 6 | buffer.get() & 0x3f;
+            } else if (c >= 0xc0) {
+                c = (c & 0x1f) << 6 | buffer.get() & 0x3f;
+            }
+            chars[count++] = (char) c;
+        }
+        return new String(chars, 0, count);
+    }
+}
@@ -18,6 +18,7 @@
 
 package COM.volano.chat.server;
 
+import  java.io.*;
 import  java.util.*;
 import  java.text.*;
 
@@ -26,7 +27,11 @@ import  COM.volano.net.DNSBlacklist;
 
 /**
  * This class manages a list of banned addresses by creating a thread to remove
- * the addresses when their ban duration expires.
+ * the addresses when their ban duration expires.  The bans are queued in order
+ * of their expiration times, so the thread sleeps until the next ban expires
+ * and removes only the expired bans rather than checking the whole list.  The
+ * bans can also be kept in a journal, from which they are restored when the
+ * server starts.
  *
  * @author  John Neffenger
  * @version 2.5
@@ -40,8 +45,8 @@ class Bantable extends Hashtable implements Runnable {
     private static final String NETBLOCK_IPV4MASK = "255.0.0.0";
 
     private static final String THREAD_NAME       = "Bantable";
-    private static final long   INTERVAL          = 60 * 1000; // One minute
     private static final long   MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long   COMPACT_INTERVAL  = 10 * 60 * 1000; // Ten minutes
 
     private static int    staticDuration   = STATIC_DURATION;
     private static int    dynamicDuration  = DYNAMIC_DURATION;
@@ -51,7 +56,30 @@ class Bantable extends Hashtable implements Runnable {
     private DateFormat    dateFormat;
     private MessageFormat bannedFormat;
 
-    private Thread sweeper;
+    private Thread        sweeper;
+    private PriorityQueue expirations = new PriorityQueue();  // Bans in order of expiration
+    private BanJournal    journal;                            // Journal of bans, or null
+    private Object        changeLock  = new Object();         // Orders changes to bans and host table
+    private long          compactTime;                        // Time the journal was last compacted
+
+    /**
+     * A ban waiting in the queue for its expiration time.
+     */
+
+    private static final class Expiration implements Comparable {
+        private long time;    // Time when the ban expires
+        private Ban  ban;     // Ban to remove from the list
+
+        private Expiration(Ban ban) {
+            this.time = ban.getExpires();
+            this.ban  = ban;
+        }
+
+        public int compareTo(Object object) {
+            long other = ((Expiration) object).time;
+            return time < other ? -1 : (time == other ? 0 : 1);
+        }
+    }
 
     static int getStaticDuration() {
         return staticDuration;
@@ -122,6 +150,31 @@ class Bantable extends Hashtable implements Runnable {
         sweeper.start();
     }
 
+    /**
+     * Restores the bans in effect from a journal of bans and then keeps the
+     * journal up to date as bans are added and lifted.
+     *
+     * @param journal  the journal of bans.
+     */
+
+    void setJournal(BanJournal journal) {
+        Hashtable bans = journal.read(System.currentTimeMillis());
+        Vector    list = new Vector(bans.size());
+        Enumeration enumeration = bans.elements();
+        while (enumeration.hasMoreElements()) {
+            Ban ban = (Ban) enumeration.nextElement();
+            super.put(ban.getAddress(), ban);
+            if (ban.getExpires() != Long.MAX_VALUE) {
+                list.addElement(new Expiration(ban));
+            }
+        }
+        synchronized (expirations) {
+            expirations.addAll(list);
+            expirations.notify();
+        }
+        this.journal = journal;
+    }
+
     private String format(Date date) {
         synchronized (dateFormat) {
             return dateFormat.format(date);
@@ -163,61 +216,178 @@ class Bantable extends Hashtable implements Runnable {
         }
     }
 
+    /**
+     * Bans an address.  The address is banned at once as a static address.
+     * It is then checked on the DNS blacklists of dynamic addresses without
+     * holding up the monitor's receive thread, and if found, the static ban is
+     * replaced by bans of the dynamic address and its network block.
+     *
+     * @param key    the address to ban.
+     * @param value  the ban information.
+     * @return  the ban for the address before this one, or <code>null</code> if
+     *          the address was not banned.
+     */
+
     public Object put(Object key, Object value) {
-        String address = (String) key;
-        Ban    ban     = (Ban) value;
-        Object oldban  = null;
-        boolean isDynamic = DNSBlacklist.contains(DNSBlacklist.getDynamic(), address);
-        if (isDynamic) {
-            if (dynamicDuration != 0) {
-                Ban copy = (Ban) ban.clone();
-                copy.setType(Ban.DYNAMIC);
-                oldban = super.put(address, copy);
-                log(copy);
-            }
-            if (netblockDuration != 0) {
-                String netblock = AccessControl.getNetblock(address, netblockIpv4mask);
-                Ban copy = (Ban) ban.clone();
-                copy.setType(Ban.NETBLOCK);
-                copy.setAddress(netblock);
-                oldban = super.put(netblock, copy);
-                log(copy);
-            }
+        final Ban ban    = (Ban) value;
+        final Ban copy   = (Ban) ban.clone();
+        Object    oldban = null;
+        copy.setType(Ban.STATIC);
+        if (staticDuration != 0) {
+            oldban = add(copy);
         } else {
-            if (staticDuration != 0) {
-                Ban copy = (Ban) ban.clone();
-                copy.setType(Ban.STATIC);
-                oldban = super.put(address, copy);
-                log(copy);
+            oldban = get(key);
+        }
+        DNSBlacklist.check(DNSBlacklist.getDynamic(), (String) key, new DNSBlacklist.Callback() {
+            public void checked(String address, boolean isDynamic) {
+                if (isDynamic) {
+                    putDynamic(address, ban, copy);
+                }
             }
+        });
+        return oldban;
+    }
+
+    /**
+     * Replaces the static ban of an address found to be dynamically assigned
+     * with the bans of the dynamic address and its network block.  Nothing is
+     * changed if the static ban has since been lifted or replaced.
+     *
+     * @param address    the address to ban.
+     * @param ban        the ban information.
+     * @param staticBan  the static ban added for the address.
+     */
+
+    private void putDynamic(String address, Ban ban, Ban staticBan) {
+        if (staticDuration != 0 && get(address) != staticBan) {
+            return;
+        }
+        if (dynamicDuration != 0) {
+            Ban copy = (Ban) ban.clone();
+            copy.setType(Ban.DYNAMIC);
+            add(copy);
+        } else if (staticDuration != 0) {
+            remove(address);
+        }
+        if (netblockDuration != 0) {
+            String netblock = AccessControl.getNetblock(address, netblockIpv4mask);
+            Ban copy = (Ban) ban.clone();
+            copy.setType(Ban.NETBLOCK);
+            copy.setAddress(netblock);
+            add(copy);
         }
+    }
+
+    /**
+     * Adds a ban to the list and the host access table, replacing any ban of
+     * the same address, and queues it for removal when its duration expires.
+     *
+     * @param ban  the ban to add.
+     * @return  the ban it replaces, or <code>null</code> if there was none.
+     */
+
+    private Object add(Ban ban) {
+        long duration = getDuration(ban.getType());
+        if (duration >= 0) { // -1 means forever
+            ban.setExpires(ban.getDate().getTime() + duration);
+        }
+        Object oldban;
+        synchronized (changeLock) {
+            oldban = super.put(ban.getAddress(), ban);
+            AccessControl.addBannedHost(ban.getAddress());
+        }
+        if (journal != null) {
+            try {
+                journal.add(ban);
+            } catch (IOException e) {
+                Log.printError(Message.format(Msg.WRITE_ERROR, journal.getFile().getPath()), e);
+            }
+        }
+        expire(ban);
+        log(ban);
         return oldban;
     }
 
     /**
-     * The body of the ban table <i>sweeper</i> thread.  This method checks the
-     * list at its specified interval and removes expired bans from the list.
+     * Queues a ban for removal when it expires.
+     *
+     * @param ban  the ban to queue.
+     */
+
+    private void expire(Ban ban) {
+        if (ban.getExpires() != Long.MAX_VALUE) {
+            synchronized (expirations) {
+                expirations.add(new Expiration(ban));
+                expirations.notify();
+            }
+        }
+    }
+
+    /**
+     * Removes a ban from the list and the host access table, and records its
+     * removal in the journal.
+     *
+     * @param key  the banned address or network block.
+     * @return  the ban removed, or <code>null</code> if the address was not
+     *          banned.
+     */
+
+    public Object remove(Object key) {
+        Object ban;
+        synchronized (changeLock) {
+            ban = super.remove(key);
+            if (ban != null) {
+                AccessControl.removeBannedHost((String) key);
+            }
+        }
+        if (ban != null) {
+            if (journal != null) {
+                try {
+                    journal.remove((String) key);
+                } catch (IOException e) {
+                    Log.printError(Message.format(Msg.WRITE_ERROR, journal.getFile().getPath()), e);
+                }
+            }
+        }
+        return ban;
+    }
+
+    /**
+     * The body of the ban table <i>sweeper</i> thread.  This method waits for
+     * the first ban in the queue to expire and then removes each expired ban
+     * from the list and the host access table, unless the ban has since been
+     * replaced or removed.  Each expired ban costs only the removal of its
+     * block from the table, and the journal is rewritten at most once every
+     * ten minutes, when it holds mostly bans no longer in effect.
      */
 
     public void run() {
         Thread thisThread = Thread.currentThread();
         try {
+            Vector expired = new Vector();
             while (sweeper == thisThread) {
-                Thread.sleep(INTERVAL);
-                synchronized (this) {
-                    Enumeration enumeration = elements();
-                    while (enumeration.hasMoreElements()) {
-                        Ban ban = (Ban) enumeration.nextElement();
-                        long duration = getDuration(ban.getType());
-                        if (duration >= 0) { // -1 means forever
-                            long start = ban.getDate().getTime();
-                            long now   = System.currentTimeMillis();
-                            if (now - start > duration) {
-                                remove(ban.getAddress());
-                            }
+                synchronized (expirations) {
+                    while (expired.size() == 0) {
+                        long now = System.currentTimeMillis();
+                        while (! expirations.isEmpty() && ((Expiration) expirations.peek()).time < now) {
+                            expired.addElement(((Expiration) expirations.poll()).ban);
+                        }
+                        if (expired.size() == 0) {  // Zero waits until notified
+                            expirations.wait(expirations.isEmpty() ? 0 : ((Expiration) expirations.peek()).time - now + 1);
+                        }
+                    }
+                }
+                for (int i = 0; i < expired.size(); i++) {
+                    Ban ban = (Ban) expired.elementAt(i);
+                    synchronized (changeLock) {
+                        if (super.get(ban.getAddress()) == ban) {
+                            super.remove(ban.getAddress());
+                            AccessControl.removeBannedHost(ban.getAddress());
                         }
                     }
                 }
+                expired.removeAllElements();
+                compact();
             }
         } catch (InterruptedException e) {}
         catch (Throwable t) {
@@ -228,6 +398,31 @@ class Bantable extends Hashtable implements Runnable {
         }
     }
 
+    /**
+     * Rewrites the journal with only the bans in effect if it holds mostly
+     * bans that have since expired or been replaced or lifted.  The bans are
+     * copied while holding the lock on the journal, so that no ban added or
+     * lifted in the meantime is missing from the new journal.
+     */
+
+    private void compact() {
+        long now = System.currentTimeMillis();
+        if (journal != null && now - compactTime >= COMPACT_INTERVAL && journal.isCompactable(size())) {
+            compactTime = now;
+            synchronized (journal) {
+                try {
+                    Object[] bans;
+                    synchronized (this) {
+                        bans = values().toArray();
+                    }
+                    journal.compact(bans);
+                } catch (IOException e) {
+                    Log.printError(Message.format(Msg.WRITE_ERROR, journal.getFile().getPath()), e);
+                }
+            }
+        }
+    }
+
     /**
      * Finalizes this object by stopping its thread.
      *
@@ -97,7 +97,11 @@ public interface Default {
     int RES_THREADS        = 0;
     int RES_CONNECTIONS    = 1;
     int RES_UNIQUE         = 2;
-    int RES_SIZE           = 3;
+    int RES_QUEUED         = 3;
+    int RES_QUEUED_BYTES   = 4;
+    int RES_SHARDS         = 5;
+    int RES_SHARD_TIME     = 6;
+    int RES_SIZE           = 7;
 
     // Status log format.
     int STATUS_DATE        =  0;
@@ -157,12 +161,23 @@ public interface Default {
     // server.verbose=false
     // server.trace=false
     // # server.nothreadgroups=false
+    // server.nio=false
+    // server.virtualthreads=false
+    // server.batch.size=64
+    // server.batch.latency=0
+    // server.queue.limit=0
+    // server.queue.bytes=0
+    // server.queue.overflow=
+    // server.fanout.size=0
+    // server.fanout.shard=1000
     // address.broadcast=false
     // script.timeout=10
     // script.trace=false
     // room.limit=25
     // room.nodynamic=false
     // room.sweep.interval=15
+    // room.mailbox=false
+    // room.presence.delay=100
     // length.chattext=400
     // length.profile=400
     // length.roomname=100
@@ -184,12 +199,23 @@ public interface Default {
     String SERVER_VERBOSE        = "false";
     String SERVER_TRACE          = "false";
     String SERVER_NOTHREADGROUPS = "false";  // For old Mac Java VM
+    String SERVER_NIO            = "false";
+    String SERVER_VIRTUALTHREADS = "false";  // Requires Java 21
+    String SERVER_BATCH_SIZE     =    "64";
+    String SERVER_BATCH_LATENCY  =     "0";  // Milliseconds
+    String SERVER_QUEUE_LIMIT    =     "0";  // Packets, or 0 for no limit
+    String SERVER_QUEUE_BYTES    =     "0";  // Bytes, or 0 for no limit
+    String SERVER_QUEUE_OVERFLOW =      "";  // Any of coalesce,drop
+    String SERVER_FANOUT_SIZE    =     "0";  // Users, or 0 for no parallel fan-out
+    String SERVER_FANOUT_SHARD   =  "1000";  // Users
     String ADDRESS_BROADCAST     = "false";
     String SCRIPT_TIMEOUT        =    "10";
     String SCRIPT_TRACE          = "false";
     String ROOM_LIMIT            =    "25";
     String ROOM_NODYNAMIC        = "false";
     String ROOM_SWEEP_INTERVAL   =    "15";
+    String ROOM_MAILBOX          = "false";
+    String ROOM_PRESENCE_DELAY   =   "100";  // Milliseconds, or 0 for no presence batches
     String USERNAME_MATCHCASE    =  "true";
     String LENGTH_CHATTEXT       =   "400";
     String LENGTH_PROFILE        =   "400";
@@ -241,17 +267,25 @@ public interface Default {
     //
     // dnslist.denied=
     // dnslist.dynamic=dynablock.wirehub.net:127.0.0.2 blackholes.five-ten-sg.com:127.0.0.3 relays.osirusoft.com:127.0.0.3 no-more-funn.moensted.dk:127.0.0.3 dnsbl.njabl.org:127.0.0.3 spamguard.leadmon.net:127.0.0.2
+    // dnslist.timeout=2000
+    // dnslist.cache.found=3600
+    // dnslist.cache.missing=300
     // ban.static.duration=1440
     // ban.dynamic.duration=60
     // ban.netblock.duration=60
     // ban.netblock.ipv4mask=255.0.0.0
+    // ban.journal=conf/banned.dat
 
     String DNSLIST_DENIED        = "";
     String DNSLIST_DYNAMIC       = "dynablock.wirehub.net:127.0.0.2 blackholes.five-ten-sg.com:127.0.0.3 relays.osirusoft.com:127.0.0.3 no-more-funn.moensted.dk:127.0.0.3 dnsbl.njabl.org:127.0.0.3 spamguard.leadmon.net:127.0.0.2";
+    String DNSLIST_TIMEOUT       = "2000";
+    String DNSLIST_CACHE_FOUND   = "3600";
+    String DNSLIST_CACHE_MISSING = "300";
     String BAN_STATIC_DURATION   = "1440";
     String BAN_DYNAMIC_DURATION  = "60";
     String BAN_NETBLOCK_DURATION = "60";
     String BAN_NETBLOCK_IPV4MASK = "255.0.0.0";
+    String BAN_JOURNAL           = "conf/banned.dat";
 
     // # Configuration files
     //
@@ -339,7 +373,7 @@ public interface Default {
     // # format.banned:           {0} Date, {1} Host address, {2} Address type, {3} Room name, {4} User name, {5} Monitor name
     // # format.status:           {0} Date, {1} Memory, {2} Resources, {3} Public rooms, {4} Personal rooms, {5} Private rooms, {6} Received, {7} Sent, {8} Total
     // # format.status.memory:    {0} Kilobytes used, {1} Kilobytes available, {2} Percentage used
-    // # format.status.resources: {0} Threads, {2} Connections, {3} Unique hosts
+    // # format.status.resources: {0} Threads, {1} Connections, {2} Unique hosts, {3} Queued packets, {4} Queued bytes, {5} Shards, {6} Microseconds per shard
     // # format.chat.public:      {0} From name, {1} To name, {2} Message, {3} Date
     // # format.chat.private:     {0} From name, {1} To name, {2} Message, {3} Date
     //
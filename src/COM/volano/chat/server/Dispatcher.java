@@ -0,0 +1,250 @@
+/*
+ * Dispatcher.java - a routing table for the packets received on a connection.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.chat.packet.*;
+import  COM.volano.net.*;
+import  java.util.*;
+
+/**
+ * This class routes the packets received on a connection directly to the chat
+ * room which handles them, rather than offering each packet to every room the
+ * user has joined.  The packet identifier determines whether a packet belongs
+ * to a public room, by room name, or to a private chat room, by room
+ * identifier.  A packet is passed to its room, if the connection is in the
+ * room, and then to the server itself, which handles any packet the room did
+ * not.  The rooms remain observers of the connection so that they are notified
+ * when it is closed.
+ *
+ * <p>The private chat rooms of a connection are few, so they are kept in a
+ * small array of their integer identifiers rather than in a hash table keyed
+ * by <code>Integer</code> objects.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Connection#setHandler
+ */
+
+class Dispatcher implements Observer {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    // Kinds of routes by packet identifier.
+    private static final int NONE    = 0;   // Handled only by the server
+    private static final int PUBLIC  = 1;   // Routed by room name
+    private static final int PRIVATE = 2;   // Routed by private room identifier
+    private static final int EITHER  = 3;   // Private if it has a room identifier
+
+    private Observer   server;                            // Handles packets not handled by a room
+    private Hashtable  routes       = new Hashtable();    // Public rooms by name
+    private int[]      privateIds   = new int[2];         // Private room identifiers
+    private Observer[] privateRooms = new Observer[2];    // Private rooms by index
+    private int        privateCount;                      // Number of private rooms
+
+    /**
+     * Creates a new dispatcher for the handler of a connection.
+     *
+     * @param server  the observer which handles packets not handled by a room,
+     *                and the other objects received on the connection.
+     */
+
+    Dispatcher(Observer server) {
+        this.server = server;
+    }
+
+    /**
+     * Routes the packets for a room received on the connection to the room, and
+     * adds the room as an observer of the connection.
+     *
+     * @param connection  the connection to the client.
+     * @param room        the room the client has entered.
+     */
+
+    static void add(Connection connection, Room room) {
+        connection.addObserver((Observer) room);
+        Observer handler = connection.getHandler();
+        if (handler instanceof Dispatcher) {
+            if (room instanceof PrivateChat) {
+                ((Dispatcher) handler).addPrivate(((PrivateChat) room).getId(), room);
+            } else {
+                ((Dispatcher) handler).routes.put(room.key(), room);
+            }
+        }
+    }
+
+    /**
+     * Stops routing the packets for a room received on the connection to the
+     * room, and removes the room as an observer of the connection.
+     *
+     * @param connection  the connection to the client.
+     * @param room        the room the client has left.
+     */
+
+    static void remove(Connection connection, Room room) {
+        connection.deleteObserver((Observer) room);
+        Observer handler = connection.getHandler();
+        if (handler instanceof Dispatcher) {
+            if (room instanceof PrivateChat) {
+                ((Dispatcher) handler).removePrivate(((PrivateChat) room).getId(), room);
+            } else {
+                Hashtable routes = ((Dispatcher) handler).routes;
+                synchronized (routes) {
+                    if (routes.get(room.key()) == room) {
+                        routes.remove(room.key());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Routes the packets for a private chat room to the room.
+     *
+     * @param roomId  the private room identifier.
+     * @param room    the private chat room.
+     */
+
+    private synchronized void addPrivate(int roomId, Room room) {
+        for (int i = 0; i < privateCount; i++) {
+            if (privateIds[i] == roomId) {
+                privateRooms[i] = (Observer) room;
+                return;
+            }
+        }
+        if (privateCount == privateIds.length) {
+            int[]      ids   = new int[privateCount * 2];
+            Observer[] rooms = new Observer[privateCount * 2];
+            System.arraycopy(privateIds, 0, ids, 0, privateCount);
+            System.arraycopy(privateRooms, 0, rooms, 0, privateCount);
+            privateIds   = ids;
+            privateRooms = rooms;
+        }
+        privateIds[privateCount]   = roomId;
+        privateRooms[privateCount] = (Observer) room;
+        privateCount++;
+    }
+
+    /**
+     * Stops routing the packets for a private chat room to the room.
+     *
+     * @param roomId  the private room identifier.
+     * @param room    the private chat room.
+     */
+
+    private synchronized void removePrivate(int roomId, Room room) {
+        for (int i = 0; i < privateCount; i++) {
+            if (privateIds[i] == roomId && privateRooms[i] == room) {
+                privateCount--;
+                privateIds[i]   = privateIds[privateCount];
+                privateRooms[i] = privateRooms[privateCount];
+                privateRooms[privateCount] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the private chat room to which packets with a room identifier are
+     * routed.
+     *
+     * @param roomId  the private room identifier.
+     * @return  the private chat room, or <code>null</code> if the connection is
+     *          not in the room.
+     */
+
+    private synchronized Observer getPrivate(int roomId) {
+        for (int i = 0; i < privateCount; i++) {
+            if (privateIds[i] == roomId) {
+                return privateRooms[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the kind of route for a packet.
+     *
+     * @param id  the packet identifier.
+     * @return the kind of route.
+     */
+
+    private static int kindOf(int id) {
+        switch (id) {
+        case ChatPacketId.PACKET_BEEP:
+        case ChatPacketId.PACKET_ENTER_PRIVATE:     // Handled by the public room
+        case ChatPacketId.PACKET_ENTER_ROOM:
+        case ChatPacketId.PACKET_EXIT_ROOM:
+        case ChatPacketId.PACKET_KICK:
+        case ChatPacketId.PACKET_PRESENCE:
+        case ChatPacketId.PACKET_USER_LIST:
+        case ChatPacketId.PACKET_WHISPER:
+            return PUBLIC;
+        case ChatPacketId.PACKET_EXIT_PRIVATE:
+            return PRIVATE;
+        case ChatPacketId.PACKET_CHAT:
+            return EITHER;
+        default:
+            return NONE;
+        }
+    }
+
+    /**
+     * Gets the room to which a packet is routed.
+     *
+     * @param packet  the packet received.
+     * @return  the public or private chat room, or <code>null</code> if the
+     *          packet is not routed to a room the connection is in.
+     */
+
+    private Observer roomOf(Packet packet) {
+        switch (kindOf(packet.getId())) {
+        case PUBLIC:
+            return (Observer) routes.get(((RoomPacket) packet).getRoomName());
+        case PRIVATE:
+            return getPrivate(((PrivatePacket) packet).getRoomId());
+        case EITHER:
+            int roomId = ((PrivatePacket) packet).getRoomId();
+            return roomId != 0 ? getPrivate(roomId) : (Observer) routes.get(((RoomPacket) packet).getRoomName());
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Called when an object is received on the connection.  A packet for a room
+     * the client has entered is passed to the room, and then every object is
+     * passed to the server.  When the room has a mailbox, the room passes the
+     * packet to the server after handling it.
+     *
+     * @param observable  the connection to the client.
+     * @param object      the object received from the client.
+     */
+
+    public void update(Observable observable, Object object) {
+        if (object instanceof Packet) {
+            Observer room = roomOf((Packet) object);
+            if (room instanceof PublicChat && ((PublicChat) room).post(observable, object, server)) {
+                return;
+            }
+            if (room != null) {
+                room.update(observable, object);
+            }
+        }
+        server.update(observable, object);
+    }
+}
@@ -36,10 +36,12 @@ public class EventLogger extends NotifyQueue implements Runnable, Observer {
     public static final String COPYRIGHT = Build.COPYRIGHT;
 
     private static final String THREAD_NAME = "EventLogger";
+    private static final int    BATCH_SIZE  = 64;
 
     private File          file;           // The log file
     private MessageFormat formatter;      // The format string for logging
     private PrintWriter   writer;
+    private Object[]      list = new Object[BATCH_SIZE];  // Events removed from the queue
 
     /**
      * Creates a new event sender for the specified URL.
@@ -82,12 +84,14 @@ public class EventLogger extends NotifyQueue implements Runnable, Observer {
      * Writes each event to the destination, one at a time, in the order in which
      * they were added to the queue.
      *
-     * @param list  the array of events to be written.
+     * @param count  the number of events in the list to be written.
      */
 
-    private void sendList(Object[] list) throws IOException {
-        for (int i = 0; isOpen() && i < list.length; i++) {
-            writeEvent(list[i]);
+    private void sendList(int count) throws IOException {
+        for (int i = 0; isOpen() && i < count; i++) {
+            Object event = list[i];
+            list[i] = null;
+            writeEvent(event);
         }
     }
 
@@ -101,7 +105,7 @@ public class EventLogger extends NotifyQueue implements Runnable, Observer {
     public void run() {
         try {
             while (isOpen()) {
-                sendList(getElements());
+                sendList(getElements(list));
                 Thread.yield();         // Yield to equal priority threads (for Solaris)
             }
         } catch (InterruptedException e) {
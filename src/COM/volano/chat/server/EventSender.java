@@ -37,9 +37,11 @@ public class EventSender extends NotifyQueue implements Runnable, Observer {
 
     private static final String THREAD_NAME = "EventSender";
     private static final String TEXT_PLAIN  = "text/plain";
+    private static final int    BATCH_SIZE  = 64;
 
     private Observable room;      // The room being observed
     private URL        url;       // The destination URL to send events.
+    private Object[]   list = new Object[BATCH_SIZE];  // Events removed from the queue
 
     /**
      * Creates a new event sender for the specified URL.
@@ -122,12 +124,14 @@ public class EventSender extends NotifyQueue implements Runnable, Observer {
      * Writes each event to the destination, one at a time, in the order in which
      * they were added to the queue.
      *
-     * @param list  the array of events to be written.
+     * @param count  the number of events in the list to be written.
      */
 
-    private void sendList(Object[] list) throws IOException {
-        for (int i = 0; isOpen() && i < list.length; i++) {
-            writeEvent(list[i]);
+    private void sendList(int count) throws IOException {
+        for (int i = 0; isOpen() && i < count; i++) {
+            Object event = list[i];
+            list[i] = null;
+            writeEvent(event);
         }
     }
 
@@ -141,7 +145,7 @@ public class EventSender extends NotifyQueue implements Runnable, Observer {
     public void run() {
         try {
             while (isOpen()) {
-                sendList(getElements());
+                sendList(getElements(list));
                 Thread.yield();         // Yield to equal priority threads (for Solaris)
             }
         } catch (InterruptedException e) {
@@ -0,0 +1,194 @@
+/*
+ * FanOut.java - a parallel broadcast to the users of a very large room.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.net.*;
+import  java.io.*;
+import  java.util.concurrent.*;
+import  java.util.concurrent.atomic.*;
+
+/**
+ * This class sends a frame to the users of a very large room, or to the
+ * audience of an auditorium, by splitting the recipients into shards of a
+ * fixed size and queuing the frame on the connections of each shard in
+ * parallel.  The broadcasting thread waits until every shard is done, so the
+ * frames of one broadcast are all queued before those of the next, and each
+ * recipient receives the frames of a room in the order they were broadcast.
+ *
+ * <p>Broadcasts to fewer recipients than the threshold are sent by the
+ * broadcasting thread alone, as before.  The time taken to queue the frame on
+ * the connections of each shard is added to a running total, reported with
+ * the send queue depth, for tuning the threshold and shard size.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     PublicChat#broadcast(Connection, StreamableFrame)
+ */
+
+class FanOut extends RecursiveAction {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private static final long serialVersionUID = 1L;
+
+    private static int          threshold;          // Fewest recipients sent in parallel, or 0 for never
+    private static int          shardSize = 1000;   // Most recipients in each shard
+    private static ForkJoinPool pool;               // Shared by all rooms, created when first needed
+
+    private static LongAdder shards = new LongAdder();  // Number of shards sent
+    private static LongAdder nanos  = new LongAdder();  // Time spent queuing shards
+
+    private Object[]        list;             // Users or connections
+    private int             start;            // First recipient of this task
+    private int             end;              // One past the last recipient
+    private Connection      origin;           // Recipient to skip, or null
+    private StreamableFrame normalFrame;      // Frame for normal users
+    private StreamableFrame monitorFrame;     // Frame for monitors, or null for the same
+
+    /**
+     * Sets when broadcasts are sent in parallel and how they are divided.
+     *
+     * @param count  the fewest recipients for which a broadcast is sent in
+     *               parallel, or 0 to send all broadcasts on the broadcasting
+     *               thread.
+     * @param size   the most recipients in each shard.
+     */
+
+    static synchronized void setLimits(int count, int size) {
+        if (count > 0 && pool == null) {
+            pool = new ForkJoinPool();
+        }
+        shardSize = Math.max(size, 1);
+        threshold = Math.max(count, 0);
+    }
+
+    /**
+     * Checks whether a broadcast to the specified number of recipients is sent
+     * in parallel.
+     *
+     * @param count  the number of recipients.
+     * @return  <code>true</code> if the broadcast is divided into shards;
+     *          otherwise <code>false</code>.
+     */
+
+    static boolean isParallel(int count) {
+        return threshold > 0 && count >= threshold && count > shardSize;
+    }
+
+    /**
+     * Gets the number of shards sent since the server started.
+     *
+     * @return  the number of shards.
+     */
+
+    static long getShardCount() {
+        return shards.sum();
+    }
+
+    /**
+     * Gets the total time spent queuing frames on the connections of each shard
+     * since the server started.
+     *
+     * @return  the time in nanoseconds.
+     */
+
+    static long getShardTime() {
+        return nanos.sum();
+    }
+
+    /**
+     * Sends a frame to the recipients in a list, in parallel if the list is
+     * long enough.
+     *
+     * @param list          the users or connections receiving the frame.
+     * @param origin        the origin of the frame and the one on which to
+     *                      avoid sending, or <code>null</code> to send to all.
+     * @param normalFrame   the frame for normal users.
+     * @param monitorFrame  the frame for monitors, or <code>null</code> to send
+     *                      them the normal frame.
+     */
+
+    static void send(Object[] list, Connection origin, StreamableFrame normalFrame, StreamableFrame monitorFrame) {
+        FanOut task = new FanOut(list, 0, list.length, origin, normalFrame, monitorFrame);
+        if (isParallel(list.length)) {
+            pool.invoke(task);
+        } else {
+            task.sendShard();
+        }
+    }
+
+    /**
+     * Creates a task sending a frame to part of a list of recipients.
+     *
+     * @param list          the users or connections receiving the frame.
+     * @param start         the index of the first recipient.
+     * @param end           the index after the last recipient.
+     * @param origin        the recipient to skip, or <code>null</code>.
+     * @param normalFrame   the frame for normal users.
+     * @param monitorFrame  the frame for monitors, or <code>null</code>.
+     */
+
+    private FanOut(Object[] list, int start, int end, Connection origin,
+                   StreamableFrame normalFrame, StreamableFrame monitorFrame) {
+        this.list         = list;
+        this.start        = start;
+        this.end          = end;
+        this.origin       = origin;
+        this.normalFrame  = normalFrame;
+        this.monitorFrame = monitorFrame;
+    }
+
+    /**
+     * Sends the frame to this task's recipients, dividing them into one task
+     * for each shard.
+     */
+
+    protected void compute() {
+        if (end - start <= shardSize) {
+            long begin = System.nanoTime();
+            sendShard();
+            nanos.add(System.nanoTime() - begin);
+            shards.increment();
+        } else {
+            int count = (end - start + shardSize - 1) / shardSize;
+            int split = start + (count / 2) * shardSize;
+            invokeAll(new FanOut(list, start, split, origin, normalFrame, monitorFrame),
+                      new FanOut(list, split, end, origin, normalFrame, monitorFrame));
+        }
+    }
+
+    /**
+     * Queues the frame on the connections of this task's recipients.
+     */
+
+    private void sendShard() {
+        for (int i = start; i < end; i++) {
+            Object     recipient  = list[i];
+            Connection connection = recipient instanceof User ? ((User) recipient).getConnection() : (Connection) recipient;
+            if (connection != origin) {
+                try {
+                    if (monitorFrame != null && connection.getBoolean(Attr.IS_MONITOR)) {
+                        connection.send(monitorFrame);
+                    } else {
+                        connection.send(normalFrame);
+                    }
+                } catch (IOException e) {}      // Error means connection is closed -- ignore
+            }
+        }
+    }
+}
@@ -18,23 +18,25 @@
 
 package COM.volano.chat.server;
 import  COM.volano.chat.Build;
-import  COM.volano.util.Message;
 import  java.util.*;
+import  java.util.concurrent.*;
 
 /**
- * This class manages a list of rooms by creating a thread to remove the empty
- * rooms in the list.
+ * This class manages a list of rooms with a sweeper to remove the empty rooms
+ * in the list.  The list is a concurrent hash table, so finding a room never
+ * waits on a change to another room.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
+ * @see     Sweeper
  */
 
-class Grouptable extends Hashtable implements Runnable {
+class Grouptable extends ConcurrentHashMap {
     public static final String COPYRIGHT = Build.COPYRIGHT;
 
-    private String name;
-    private int    interval;
-    private Thread sweeper;
+    private static final long serialVersionUID = 1L;
+
+    private transient Sweeper sweeper;    // Removes the empty rooms
 
     /**
      * Creates a new group table object.
@@ -42,17 +44,16 @@ class Grouptable extends Hashtable implements Runnable {
      * @param name      the name of this room list and its associated list
      *                  <i>sweeper</i> thread.
      * @param priority  the priority of the sweeper thread.
-     * @param interval  the interval at which the sweeper thread checks the list
-     *                  for empty rooms.
+     * @param interval  the time a room must stay empty before the sweeper
+     *                  thread removes it from the list.
      */
 
     Grouptable(String name, int priority, int interval) {
-        this.name     = name;
-        this.interval = interval;
-        this.sweeper  = new Thread(this, name);
-        sweeper.setPriority(priority);
-        sweeper.setDaemon(true);
-        sweeper.start();
+        sweeper = new Sweeper(name, priority, interval) {
+            void remove(Object key) {
+                Grouptable.this.remove(key);
+            }
+        };
     }
 
     /**
@@ -61,58 +62,32 @@ class Grouptable extends Hashtable implements Runnable {
      * @return  the rooms in the list at the time this method was called.
      */
 
-    synchronized Observer[] snapshot() {
-        int         count = size();
-        Observer[]  list  = new Observer[count];
-        Enumeration enumeration  = elements();
-        for (int i = 0; i < count; i++) {
-            list[i] = (Observer) enumeration.nextElement();
-        }
-        return list;
+    Observer[] snapshot() {
+        return (Observer[]) values().toArray(new Observer[0]);
     }
 
     /**
-     * The body of the room list <i>sweeper</i> thread.  This method checks the
-     * list at its specified interval and removes empty rooms from the list.
+     * Adds a room to the list.
+     *
+     * @param key    the key to the room.
+     * @param value  the room.
+     * @return  the previous room in the list with this key, or <code>null</code>
+     *          if there was no room in the list with this key.
      */
 
-    public void run() {
-        Thread thisThread = Thread.currentThread();
-        try {
-            while (sweeper == thisThread) {
-                Thread.sleep(interval);
-                synchronized (this) {
-                    Enumeration enumeration = elements();
-                    while (enumeration.hasMoreElements()) {
-                        Room room = (Room) enumeration.nextElement();
-                        if (room.size() == 0) {
-                            remove(room.key());
-                        }
-                    }
-                }
-            }
-        } catch (InterruptedException e) {
-            // Interrupted when finalized.
-        } catch (Throwable t) {
-            Log.printError(Message.format(Msg.UNEXPECTED, name), t);
-        } finally {
-            sweeper = null;
-            Log.printError(Message.format(Msg.STOPPING, name));
-        }
+    public Object put(Object key, Object value) {
+        ((Room) value).setSweeper(sweeper);
+        return super.put(key, value);
     }
 
     /**
-     * Finalizes this object by stopping its thread.
+     * Finalizes this object by stopping its sweeper thread.
      *
      * @exception java.lang.Throwable  if an error occurs finalizing this object.
      */
 
     protected void finalize() throws Throwable {
         super.finalize();
-        if (sweeper != null) {
-            Thread thread = sweeper;
-            sweeper = null;
-            thread.interrupt();
-        }
+        sweeper.stop();
     }
 }
@@ -64,12 +64,23 @@ public interface Key {
     String SERVER_VERBOSE        = "server.verbose";
     String SERVER_TRACE          = "server.trace";
     String SERVER_NOTHREADGROUPS = "server.nothreadgroups";
+    String SERVER_NIO            = "server.nio";
+    String SERVER_VIRTUALTHREADS = "server.virtualthreads";
+    String SERVER_BATCH_SIZE     = "server.batch.size";
+    String SERVER_BATCH_LATENCY  = "server.batch.latency";
+    String SERVER_QUEUE_LIMIT    = "server.queue.limit";
+    String SERVER_QUEUE_BYTES    = "server.queue.bytes";
+    String SERVER_QUEUE_OVERFLOW = "server.queue.overflow";
+    String SERVER_FANOUT_SIZE    = "server.fanout.size";
+    String SERVER_FANOUT_SHARD   = "server.fanout.shard";
     String ADDRESS_BROADCAST     = "address.broadcast";
     String SCRIPT_TIMEOUT        = "script.timeout";
     String SCRIPT_TRACE          = "script.trace";
     String ROOM_LIMIT            = "room.limit";
     String ROOM_NODYNAMIC        = "room.nodynamic";
     String ROOM_SWEEP_INTERVAL   = "room.sweep.interval";
+    String ROOM_MAILBOX          = "room.mailbox";
+    String ROOM_PRESENCE_DELAY   = "room.presence.delay";
     String USERNAME_MATCHCASE    = "username.matchcase";
     String LENGTH_CHATTEXT       = "length.chattext";
     String LENGTH_PROFILE        = "length.profile";
@@ -98,10 +109,14 @@ public interface Key {
     // Banning control.
     String DNSLIST_DENIED        = "dnslist.denied";
     String DNSLIST_DYNAMIC       = "dnslist.dynamic";
+    String DNSLIST_TIMEOUT       = "dnslist.timeout";
+    String DNSLIST_CACHE_FOUND   = "dnslist.cache.found";
+    String DNSLIST_CACHE_MISSING = "dnslist.cache.missing";
     String BAN_STATIC_DURATION   = "ban.static.duration";
     String BAN_DYNAMIC_DURATION  = "ban.dynamic.duration";
     String BAN_NETBLOCK_DURATION = "ban.netblock.duration";
     String BAN_NETBLOCK_IPV4MASK = "ban.netblock.ipv4mask";
+    String BAN_JOURNAL           = "ban.journal";
 
     // Configuration files.
     String SERVER_KEY             = "server.key";
@@ -0,0 +1,171 @@
+/*
+ * Mailbox.java - a queue of the packets for a chat room.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.util.Message;
+import  java.util.*;
+import  java.util.concurrent.*;
+import  java.util.concurrent.atomic.*;
+
+/**
+ * This class queues the packets for a public chat room so that the room
+ * handles them one at a time, in the order they arrive, on a thread of a
+ * scheduler shared by all rooms.  The receive thread of a connection only adds
+ * the packet to the mailbox and goes back to reading.  A room with an empty
+ * mailbox uses no thread at all, and a busy room handles a batch of packets
+ * before giving its thread to the next room.
+ *
+ * <p>Only the packets received from clients pass through the mailbox.  The
+ * batched presence changes and the administrator's broadcasts are sent to the
+ * room's users directly, so they are not ordered with the packets in the
+ * mailbox.
+ *
+ * <p>Rooms have mailboxes only when the server is started with
+ * <code>room.mailbox=true</code>.  Otherwise each packet is handled by the
+ * receive thread on which it arrived, as before.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Dispatcher
+ */
+
+class Mailbox implements Runnable {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private static final String THREAD_NAME = "Mailbox";
+    private static final int    BATCH       = 64;   // Most packets handled before yielding
+
+    private static ForkJoinPool scheduler;          // Shared by all rooms, or null if not enabled
+
+    private PublicChat            room;                                   // Room handling the packets
+    private ConcurrentLinkedQueue messages  = new ConcurrentLinkedQueue();  // Packets not yet handled
+    private AtomicBoolean         scheduled = new AtomicBoolean();          // Queued on the scheduler
+
+    /**
+     * A packet received on a connection, or the notice that the connection is
+     * closed.
+     */
+
+    private static final class Letter {
+        private final Observable source;    // Connection to the client
+        private final Object     object;    // Packet, or null for closed
+        private final Observer   next;      // Handles the packet after the room, or null
+
+        private Letter(Observable source, Object object, Observer next) {
+            this.source = source;
+            this.object = object;
+            this.next   = next;
+        }
+    }
+
+    /**
+     * Creates the scheduler shared by the mailboxes of all rooms.  Rooms
+     * created afterwards handle their packets through their mailboxes.
+     *
+     * @param enabled  <code>true</code> to give each room a mailbox; otherwise
+     *                 <code>false</code>.
+     */
+
+    static synchronized void setEnabled(boolean enabled) {
+        if (enabled && scheduler == null) {
+            scheduler = new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                                         ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+        }
+    }
+
+    /**
+     * Checks whether rooms handle their packets through mailboxes.
+     *
+     * @return  <code>true</code> if rooms have mailboxes; otherwise
+     *          <code>false</code>.
+     */
+
+    static synchronized boolean isEnabled() {
+        return scheduler != null;
+    }
+
+    /**
+     * Creates a new mailbox for a room.
+     *
+     * @param room  the public chat room handling the packets.
+     */
+
+    Mailbox(PublicChat room) {
+        this.room = room;
+    }
+
+    /**
+     * Adds a packet to the mailbox, scheduling the room to handle it unless
+     * the room is already scheduled.
+     *
+     * @param source  the connection to the client.
+     * @param object  the packet received from the client, or <code>null</code>
+     *                if the connection is closed.
+     * @param next    the observer which handles the packet after the room if
+     *                the room did not, or <code>null</code> if none.
+     */
+
+    void post(Observable source, Object object, Observer next) {
+        messages.add(new Letter(source, object, next));
+        if (scheduled.compareAndSet(false, true)) {
+            scheduler.execute(this);
+        }
+    }
+
+    /**
+     * Handles the next batch of packets in the mailbox on a scheduler thread,
+     * scheduling the room again if more packets remain.
+     */
+
+    public void run() {
+        try {
+            for (int i = 0; i < BATCH; i++) {
+                Letter letter = (Letter) messages.poll();
+                if (letter == null) {
+                    break;
+                }
+                deliver(letter);
+            }
+        } finally {
+            scheduled.set(false);
+            if (! messages.isEmpty() && scheduled.compareAndSet(false, true)) {
+                scheduler.execute(this);
+            }
+        }
+    }
+
+    /**
+     * Passes a packet to the room and then to the next observer.
+     *
+     * @param letter  the packet and the connection on which it was received.
+     */
+
+    private void deliver(Letter letter) {
+        try {
+            room.process(letter.source, letter.object);
+            if (letter.next != null) {
+                letter.next.update(letter.source, letter.object);
+            }
+        } catch (ThreadDeath e) {
+            throw e;          // Rethrow for cleanup
+        } catch (Throwable t) {
+            Log.printError(Message.format(Msg.UNEXPECTED, THREAD_NAME), t);
+        }
+    }
+}
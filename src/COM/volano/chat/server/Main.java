@@ -26,6 +26,7 @@ import  COM.volano.net.*;
 import  COM.volano.util.Message;
 import  java.io.*;
 import  java.net.*;
+import  java.nio.channels.ServerSocketChannel;
 import  java.security.*;
 import  java.text.*;
 import  java.util.*;
@@ -47,6 +48,7 @@ public class Main implements Runnable, Observer {
     private static final String PUBLIC_LIST   = "PublicRooms";
     private static final String PERSONAL_LIST = "PersonalRooms";
     private static final String PRIVATE_LIST  = "PrivateRooms";
+    private static final String RESOLVER_NAME = "DNSBlacklist";
     private static final String NOTE          = "*** ";
 
     private static final int MILLIS_PER_MINUTE = 1000 * 60;       // Milliseconds per minute
@@ -69,6 +71,7 @@ public class Main implements Runnable, Observer {
     {ChatPacketId.PACKET_ACCESS_OLD, ChatPacketId.PACKET_ACCESS, ChatPacketId.PACKET_PASSWORD_ACCESS};
     private static final int[]  SECOND_PACKET = {ChatPacketId.PACKET_AUTHENTICATE};
     private static final int[]  ANY_PACKET    = new int[0];
+    private static final int[]  NO_PACKET     = {-1};       // Packet identifiers are unsigned
 
     private static final String PREFIX           = "<result value=\"true|false|error\">";
     private static final String TRUE_PREFIX      = "<result value=\"true\">";
@@ -87,7 +90,7 @@ public class Main implements Runnable, Observer {
     private ServletRunner  runner;        // Embedded servlet runner
     private PublicList     publicList;    // List of public chat rooms
     private PublicList     personalList;  // List of personal chat rooms
-    private Grouptable     privateList;   // List of private chat rooms
+    private PrivateList    privateList;   // List of private chat rooms
     private Hashtable      memberMonitorList;     // 2.1.8 - List of member monitors
     private Thread         listener;      // Listens for incoming socket connections
 
@@ -133,11 +136,11 @@ public class Main implements Runnable, Observer {
     }
 
     static String[] getPublicRooms() {
-        return server.publicList.getNames();
+        return server.publicList.getNames().clone();
     }
 
     static String[] getPersonalRooms() {
-        return server.personalList.getNames();
+        return server.personalList.getNames().clone();
     }
 
     static String[] getPrivateRooms() {
@@ -706,10 +709,16 @@ public class Main implements Runnable, Observer {
             Log.ban = logger;
         }
 
-        serverSocket = new ServerSocket(license.getPort(), value.serverBacklog, license.getInetAddress());
+        if (value.serverNio) {
+            // Accepted sockets have channels for the non-blocking connections.
+            serverSocket = ServerSocketChannel.open().socket();
+            serverSocket.bind(new InetSocketAddress(license.getInetAddress(), license.getPort()), value.serverBacklog);
+        } else {
+            serverSocket = new ServerSocket(license.getPort(), value.serverBacklog, license.getInetAddress());
+        }
         publicList   = new PublicList(PUBLIC_LIST,   Thread.MIN_PRIORITY, value.roomSweepInterval * MILLIS_PER_MINUTE);
         personalList = new PublicList(PERSONAL_LIST, Thread.MIN_PRIORITY, value.roomSweepInterval * MILLIS_PER_MINUTE);
-        privateList  = new Grouptable(PRIVATE_LIST,  Thread.MIN_PRIORITY, value.roomSweepInterval * MILLIS_PER_MINUTE);
+        privateList  = new PrivateList(PRIVATE_LIST,  Thread.MIN_PRIORITY, value.roomSweepInterval * MILLIS_PER_MINUTE);
         memberMonitorList = new Hashtable();        // 2.1.8
 
         // Get pseudo random number generator for creating random bytes for clients
@@ -725,8 +734,8 @@ public class Main implements Runnable, Observer {
                 roomName = roomName.substring(0, value.lengthRoomname).trim();
             }
             PublicChat room = new PublicChat(value, privateList, roomName, "");
-            publicList.add(roomName, room);
             room.incrementGuest();            // So room will never be removed
+            publicList.add(roomName, room);
         }
 
         // If transcribing permanent rooms, attach any event logging observers.
@@ -868,7 +877,9 @@ public class Main implements Runnable, Observer {
                     }
                     Connection connection = new Connection(socket, true);
                     connection.addObserver(this);
+                    connection.setHandler(new Dispatcher(this));
                     connection.setAttribute(Attr.EXPECTED, FIRST_PACKET);
+                    connection.setAttribute(Attr.LOCK, new Object());
                     connection.startSending(Thread.NORM_PRIORITY);
                     connection.startReceiving(Thread.NORM_PRIORITY);
                     Thread.yield();       // Yield to other threads with the same priority (for Solaris)
@@ -1028,46 +1039,79 @@ public class Main implements Runnable, Observer {
             connection.setAttribute(Attr.ROOM_NAME, roomName);
         }
 
-        // Synchronize on the room list so that:
-        // (1) the room doesn't get created twice by two different guests, and
-        // (2) the room doesn't get deleted between the time we get it and the
-        //     time we add this new guest.
-        synchronized (list) {
+        // Lock the room so that it doesn't get deleted between the time we get
+        // it and the time we add this new guest.  If it was deleted anyway, get
+        // the room again.
+        while (true) {
             PublicChat room = (PublicChat) list.get(roomName);
             if (room == null) {
-                if (isEvent) {
-                    room = new Auditorium(value, privateList, roomName, documentBase);
-                    if (value.auditoriumsPermanent) {
-                        room.incrementGuest();    // So room will never be removed
-                    }
-                    list.addFirst(roomName, room);
-                } else {
-                    room = new PublicChat(value, privateList, roomName, documentBase);
-                    list.add(roomName, room);
+                room = createRoom(list, roomName, documentBase, isEvent);
+            }
+            synchronized (room) {
+                if (! room.isRemoved()) {
+                    room.incrementGuest();    // So we don't delete room while client is connected
+                    return;
                 }
+            }
+        }
+    }
 
-                // If transcribing events, dynamic rooms, or personal rooms, attach any
-                // event logging observers.
-                boolean transcribe = false;
-                if (list == publicList && value.transcribeRoomDynamic) {
-                    transcribe = true;
-                }
-                if (list == personalList && value.transcribeRoomPersonal) {
-                    transcribe = true;
-                }
-                if (isEvent && value.transcribeRoomEvent) {
-                    transcribe = true;
+    /**
+     * Creates a room unless another guest has just created it.
+     *
+     * @param list          the list of public or personal rooms.
+     * @param roomName      the name of the room in the list.
+     * @param documentBase  the Web page containing the client applet.
+     * @param isEvent       <code>true</code> to create an event auditorium;
+     *                      otherwise <code>false</code>.
+     * @return  the room in the list with the given name.
+     */
+
+    private PublicChat createRoom(PublicList list, String roomName, String documentBase, boolean isEvent) {
+        // Synchronize on the room list so that the room doesn't get created twice
+        // by two different guests.  The room is ready before it is added to the
+        // list, since the sweeper thread may lock the room once it is found.
+        synchronized (list) {
+            PublicChat room = (PublicChat) list.get(roomName);
+            if (room != null) {
+                return room;
+            }
+            if (isEvent) {
+                room = new Auditorium(value, privateList, roomName, documentBase);
+                if (value.auditoriumsPermanent) {
+                    room.incrementGuest();    // So room will never be removed
                 }
-                if (transcribe) {
-                    File logFile = new File(value.logChatPublicDir, room.name() + value.logChatPublicSuffix);
-                    try {
-                        room.addObserver(new EventLogger(logFile, value.formatChatPublic));
-                    } catch (IOException e) {
-                        Log.printError(Message.format(Msg.WRITE_ERROR, logFile.getPath()), e);
-                    }
+            } else {
+                room = new PublicChat(value, privateList, roomName, documentBase);
+            }
+
+            // If transcribing events, dynamic rooms, or personal rooms, attach any
+            // event logging observers.
+            boolean transcribe = false;
+            if (list == publicList && value.transcribeRoomDynamic) {
+                transcribe = true;
+            }
+            if (list == personalList && value.transcribeRoomPersonal) {
+                transcribe = true;
+            }
+            if (isEvent && value.transcribeRoomEvent) {
+                transcribe = true;
+            }
+            if (transcribe) {
+                File logFile = new File(value.logChatPublicDir, room.name() + value.logChatPublicSuffix);
+                try {
+                    room.addObserver(new EventLogger(logFile, value.formatChatPublic));
+                } catch (IOException e) {
+                    Log.printError(Message.format(Msg.WRITE_ERROR, logFile.getPath()), e);
                 }
             }
-            room.incrementGuest();    // So we don't delete room while client is connected
+
+            if (isEvent) {
+                list.addFirst(roomName, room);
+            } else {
+                list.add(roomName, room);
+            }
+            return room;
         }
     }
 
@@ -1084,6 +1128,127 @@ public class Main implements Runnable, Observer {
         return bytes;
     }
 
+    /**
+     * Checks the address of a client against the DNS blacklists for denying
+     * access and then finishes handling its access request.  The lists are
+     * checked only if nothing else denies the client access, and the receive
+     * thread does not wait for their answers.  The client sends nothing more
+     * until it receives the confirmation, so the connection expects no packets
+     * until the request is finished on the thread that receives the last
+     * answer, or on this thread if the answers are all cached.
+     *
+     * @param connection  the connection to the client.
+     * @param request     the access or password access request.
+     */
+
+    private void checkBlacklist(final Connection connection, final Access request) {
+        request.setHandled();
+        String address = connection.getHostAddress();
+        if (DNSBlacklist.getDenied().isEmpty() ||
+                (! value.duplicateAddresses && Connection.isDuplicate(connection)) ||
+                ! AccessControl.isHostAllowed(address)) {
+            finishAccess(connection, request, false);
+        } else {
+            connection.setAttribute(Attr.EXPECTED, NO_PACKET);
+            DNSBlacklist.check(DNSBlacklist.getDenied(), address, new DNSBlacklist.Callback() {
+                public void checked(String address, boolean found) {
+                    try {
+                        finishAccess(connection, request, found);
+                    } catch (ThreadDeath e) {
+                        throw e;          // Rethrow for cleanup
+                    } catch (Throwable t) {
+                        Log.printError(Message.format(Msg.UNEXPECTED, RESOLVER_NAME), t);
+                        connection.close();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Finishes handling an access or password access request, first checking
+     * the member name and password of a member access request.  The member
+     * check is a request to another server, so it is run by the connection in
+     * a way that does not hold up the other connections of a non-blocking event
+     * loop.
+     *
+     * @param connection   the connection to the client.
+     * @param request      the access or password access request.
+     * @param blacklisted  <code>true</code> if the client's address is on a DNS
+     *                     blacklist for denying access; otherwise
+     *                     <code>false</code>.
+     */
+
+    private void finishAccess(final Connection connection, final Access request, final boolean blacklisted) {
+        if (request instanceof PasswordAccess && isMemberAccess((PasswordAccess) request, blacklisted)) {
+            final PasswordAccess access  = (PasswordAccess) request;
+            final StringBuffer   profile = new StringBuffer();
+            final StringBuffer   link    = new StringBuffer();
+            final boolean[]      member  = new boolean[1];
+            connection.execute(new Runnable() {
+                public void run() {
+                    member[0] = isMember(value.memberVersion, value.memberAccess, access.getMemberName(),
+                                         access.getMemberPassword(), access.getDefaultRoom(), profile, link);
+                }
+            }, new Runnable() {
+                public void run() {
+                    finishAccess(connection, access, blacklisted, member[0], profile.toString(), link.toString());
+                }
+            });
+        } else {
+            finishAccess(connection, request, blacklisted, false, "", "");
+        }
+    }
+
+    /**
+     * Checks whether a password access request needs its member name and
+     * password checked by the member access script.
+     *
+     * @param request      the password access request.
+     * @param blacklisted  <code>true</code> if the client's address is on a DNS
+     *                     blacklist for denying access; otherwise
+     *                     <code>false</code>.
+     * @return  <code>true</code> if the member must be checked; otherwise
+     *          <code>false</code>.
+     */
+
+    private boolean isMemberAccess(PasswordAccess request, boolean blacklisted) {
+        return request.isMember() && ! blacklisted &&
+               request.getAppletVersion().equals(Access.PUBLIC_VERSION) && ! license.isVolanoChatSP() &&
+               value.memberAccess.toPattern().length() > 0;
+    }
+
+    /**
+     * Finishes handling an access or password access request once any member
+     * check is done.  The request is finished while holding the connection's
+     * lock, so that it cannot release the rooms of a closed connection at the
+     * same time, and is dropped if the connection has already been closed.
+     *
+     * @param connection   the connection to the client.
+     * @param request      the access or password access request.
+     * @param blacklisted  <code>true</code> if the client's address is on a DNS
+     *                     blacklist for denying access; otherwise
+     *                     <code>false</code>.
+     * @param member       <code>true</code> if the member name and password are
+     *                     valid; otherwise <code>false</code>.
+     * @param profile      the member profile.
+     * @param link         the member link flag.
+     */
+
+    private void finishAccess(Connection connection, Access request, boolean blacklisted,
+                              boolean member, String profile, String link) {
+        synchronized (connection.getAttribute(Attr.LOCK)) {
+            if (connection.getBoolean(Attr.IS_CLOSED)) {
+                return;
+            }
+            if (request instanceof PasswordAccess) {
+                passwordAccessRequest(connection, (PasswordAccess) request, blacklisted, member, profile, link);
+            } else {
+                accessRequest(connection, request, blacklisted);
+            }
+        }
+    }
+
     /**
      * Handles a password access request from the client.
      *
@@ -1104,9 +1269,28 @@ public class Main implements Runnable, Observer {
         }
 
         connection.setAttribute(Attr.ACCESS_REQ, request);  // Save information for disconnect log entry
+        checkBlacklist(connection, request);
+    }
+
+    /**
+     * Finishes handling a password access request from the client once its
+     * address has been checked against the DNS blacklists.
+     *
+     * @param connection   the connection to the client.
+     * @param request      the password access request.
+     * @param blacklisted  <code>true</code> if the client's address is on a DNS
+     *                     blacklist for denying access; otherwise
+     *                     <code>false</code>.
+     * @param member       <code>true</code> if the member name and password are
+     *                     valid; otherwise <code>false</code>.
+     * @param profile      the member profile.
+     * @param link         the member link flag.
+     */
+
+    private void passwordAccessRequest(Connection connection, PasswordAccess request, boolean blacklisted,
+                                       boolean member, String profile, String link) {
         String  documentBase   = request.getDocumentBase();
         String  memberName     = request.getMemberName();
-        String  memberPassword = request.getMemberPassword();
         String  password       = request.getPassword();
         String  memberProfile  = "";
         boolean isEvent        = false;
@@ -1114,8 +1298,7 @@ public class Main implements Runnable, Observer {
         int result = Access.OKAY;                   // Assume access is allowed
         if (! value.duplicateAddresses && Connection.isDuplicate(connection)) {
             result = Access.HOST_DUPLICATE;
-        } else if (! AccessControl.isHostAllowed(connection.getHostAddress()) ||
-                   DNSBlacklist.contains(DNSBlacklist.getDenied(), connection.getHostAddress())) {
+        } else if (! AccessControl.isHostAllowed(connection.getHostAddress()) || blacklisted) {
             result = Access.HOST_DENIED;    // Host is denied
         } else if (! AccessControl.isReferrerAllowed(AccessControl.cleanReferrer(documentBase))) {
             result = Access.DOCUMENT_DENIED;    // Referrer is denied
@@ -1125,17 +1308,13 @@ public class Main implements Runnable, Observer {
         else if (request.getAppletVersion().equals(Access.PUBLIC_VERSION) && ! license.isVolanoChatSP()) {
             connection.setAttribute(Attr.CLIENT_VER, Access.PUBLIC_VERSION);
             if (request.isMember()) {
-                StringBuffer profile = new StringBuffer();
-                StringBuffer link    = new StringBuffer();
                 // If the member access script is defined, and the user has given a
                 // valid member name and password:
                 //   Mark this connection with its member name.
-                String defaultRoom = request.getDefaultRoom();
-                if (value.memberAccess.toPattern().length() > 0 &&
-                        isMember(value.memberVersion, value.memberAccess, memberName, memberPassword, defaultRoom, profile, link)) {
+                if (member) {
                     connection.setAttribute(Attr.MEMBER_NAME, memberName);
-                    connection.setAttribute(Attr.MEMBER_LINK, link.toString());
-                    memberProfile = profile.toString();
+                    connection.setAttribute(Attr.MEMBER_LINK, link);
+                    memberProfile = profile;
                     // 2.1.8 - Check whether this member is also a monitor.
                     String lookupName = value.memberMonitorMatchcase ? memberName : memberName.toLowerCase();
                     if (value.memberMonitorTable.containsKey(lookupName)) {
@@ -1236,13 +1415,27 @@ public class Main implements Runnable, Observer {
         }
 
         connection.setAttribute(Attr.ACCESS_REQ, request);  // Save information for disconnect log entry
+        checkBlacklist(connection, request);
+    }
+
+    /**
+     * Finishes handling an access request from the client once its address has
+     * been checked against the DNS blacklists.
+     *
+     * @param connection   the connection to the client.
+     * @param request      the access request.
+     * @param blacklisted  <code>true</code> if the client's address is on a DNS
+     *                     blacklist for denying access; otherwise
+     *                     <code>false</code>.
+     */
+
+    private void accessRequest(Connection connection, Access request, boolean blacklisted) {
         String documentBase = request.getDocumentBase();
 
         int result = Access.OKAY;                           // Assume access is allowed
         if (! value.duplicateAddresses && Connection.isDuplicate(connection)) {
             result = Access.HOST_DUPLICATE;
-        } else if (! AccessControl.isHostAllowed(connection.getHostAddress()) ||
-                   DNSBlacklist.contains(DNSBlacklist.getDenied(), connection.getHostAddress())) {
+        } else if (! AccessControl.isHostAllowed(connection.getHostAddress()) || blacklisted) {
             result = Access.HOST_DENIED;    // Host is denied
         } else if (! AccessControl.isReferrerAllowed(AccessControl.cleanReferrer(documentBase))) {
             result = Access.DOCUMENT_DENIED;          // Referrer is denied
@@ -1350,26 +1543,54 @@ public class Main implements Runnable, Observer {
      * @param request     the enter room request.
      */
 
-    private void enterRoomRequest(Connection connection, EnterRoom request) {
+    private void enterRoomRequest(final Connection connection, final EnterRoom request) {
         if (Build.UPDATE_TRACE) {
             System.out.println("Main enterRoomRequest ...");
         }
 
-        String roomName = request.getRoomName();
-        String userName = request.getUserName();
-        String profile  = request.getProfile();
+        final String roomName = request.getRoomName();
+        final String userName = request.getUserName();
         // Don't forget these room names can be document base URLs, so make sure the
         // maximum length is not too small for any reasonable URL specification.
         if (roomName.length() > value.lengthRoomname) {
             request.setHandled();
             connection.close(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);        // Not our VolanoChat Client
         }
-        // If the member name script is defined, the user is not entering with his
-        // or her member name, and the name is taken by another member:
-        //   Reject the connection.
+        // If the member name script is defined and the user is not entering with
+        // his or her member name, check whether the name is taken by another
+        // member without holding up the other connections of an event loop.
         else if (value.memberName.toPattern().length() > 0 &&
-                 ! userName.equalsIgnoreCase((String) connection.getAttribute(Attr.MEMBER_NAME)) &&
-                 isMember(value.memberVersion, value.memberName, userName, roomName)) {
+                 ! userName.equalsIgnoreCase((String) connection.getAttribute(Attr.MEMBER_NAME))) {
+            final boolean[] taken = new boolean[1];
+            connection.execute(new Runnable() {
+                public void run() {
+                    taken[0] = isMember(value.memberVersion, value.memberName, userName, roomName);
+                }
+            }, new Runnable() {
+                public void run() {
+                    enterRoomRequest(connection, request, taken[0]);
+                }
+            });
+        } else {
+            enterRoomRequest(connection, request, false);
+        }
+    }
+
+    /**
+     * Finishes handling an enter room request once the user name has been
+     * checked against the member names.
+     *
+     * @param connection  the connection to the client.
+     * @param request     the enter room request.
+     * @param taken       <code>true</code> if the user name is taken by another
+     *                    member; otherwise <code>false</code>.
+     */
+
+    private void enterRoomRequest(Connection connection, EnterRoom request, boolean taken) {
+        String roomName = request.getRoomName();
+        // If the name is taken by another member:
+        //   Reject the connection.
+        if (taken) {
             request.setHandled();
             request.confirm(EnterRoom.MEMBER_TAKEN);
             send(connection, request);
@@ -1377,29 +1598,38 @@ public class Main implements Runnable, Observer {
             String client = (String) connection.getAttribute(Attr.CLIENT_VER);
             if (client != null) {
                 if (client.equals(Access.PUBLIC_VERSION)) {
-                    // Synchronize on the room list so that the room doesn't get deleted
-                    // between the time we get it and the time we add this new user.
-                    synchronized (publicList) {
-                        PublicChat room = (PublicChat) publicList.get(roomName);
-                        if (room == null) {
-                            request.setHandled();
-                            request.confirm(EnterRoom.NO_SUCH_ROOM);
-                            send(connection, request);
-                        } else {
-                            room.update(connection, request);    // Pass on to public room
-                        }
-                    }
+                    enterRoom(connection, publicList, roomName, request);    // Pass on to public room
                 } else if (client.equals(Access.PERSONAL_VERSION)) {
-                    synchronized (personalList) {
-                        PublicChat room = (PublicChat) personalList.get(roomName);
-                        if (room == null) {
-                            request.setHandled();
-                            request.confirm(EnterRoom.NO_SUCH_ROOM);
-                            send(connection, request);
-                        } else {
-                            room.update(connection, request);    // Pass on to personal room
-                        }
-                    }
+                    enterRoom(connection, personalList, roomName, request);  // Pass on to personal room
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes an enter room request on to the room in the list.
+     *
+     * @param connection  the connection to the client.
+     * @param list        the list of public or personal rooms.
+     * @param roomName    the name of the room to enter.
+     * @param request     the enter room request.
+     */
+
+    private void enterRoom(Connection connection, PublicList list, String roomName, EnterRoom request) {
+        // Lock only the room so that it doesn't get deleted between the time we
+        // get it and the time we add this new user, while users enter other rooms.
+        while (true) {
+            PublicChat room = (PublicChat) list.get(roomName);
+            if (room == null) {
+                request.setHandled();
+                request.confirm(EnterRoom.NO_SUCH_ROOM);
+                send(connection, request);
+                return;
+            }
+            synchronized (room) {
+                if (! room.isRemoved()) {
+                    room.update(connection, request);
+                    return;
                 }
             }
         }
@@ -1536,9 +1766,14 @@ public class Main implements Runnable, Observer {
         // room the administrator has not entered will end up a broadcast message.
         // if (connection.getBoolean(Attr.IS_ADMIN)) {
         if (connection.getBoolean(Attr.IS_ADMIN) && request.getRoomName().length() == 0) {
-            broadcast(publicList.snapshot(), connection, request);
-            broadcast(personalList.snapshot(), connection, request);
             request.setHandled();
+            if (request.getUserName().length() > value.lengthUsername || request.getText().length() > value.lengthChattext) {
+                connection.close(HttpURLConnection.HTTP_ENTITY_TOO_LARGE);        // Not our VolanoChat Client
+            } else if (request.getUserName().length() == 0) {
+                Chat indication = (Chat) request.clone();
+                broadcast(publicList.snapshot(), indication);
+                broadcast(personalList.snapshot(), indication);
+            }
         }
     }
 
@@ -1565,9 +1800,9 @@ public class Main implements Runnable, Observer {
         // connection object.  Such synchronization has been removed in JDK 1.1.5,
         // but we'll leave this logic here for now, just in case.
 
-        PrivateChat room = (PrivateChat) privateList.get(new Integer(packet.getRoomId()));
+        PrivateChat room = privateList.get(packet.getRoomId());
         if (room != null) {
-            connection.addObserver(room);
+            Dispatcher.add(connection, room);
             room.update(connection, packet);
         }
     }
@@ -1599,6 +1834,9 @@ public class Main implements Runnable, Observer {
         }
 
         connection.deleteObserver(this);
+        synchronized (connection.getAttribute(Attr.LOCK)) {
+            connection.setBoolean(Attr.IS_CLOSED);    // Drops any access request still pending
+        }
 
         String roomName = (String) connection.getAttribute(Attr.ROOM_NAME);
         if (roomName != null) {
@@ -1788,20 +2026,20 @@ public class Main implements Runnable, Observer {
     }
 
     /**
-     * Broadcasts the chat request to the list of public or personal chat rooms.
+     * Broadcasts the administrator chat indication to the list of public or
+     * personal chat rooms.  The same indication is set with the name of each
+     * room in turn and sent by the room directly, since the room serializes it
+     * before returning.
      *
      * @param list        the list of public or personal chat rooms.
-     * @param connection  the connection on which this broadcast chat request was
-     *                    received.
-     * @param request     the chat request to broadcast.
+     * @param indication  the chat indication to broadcast.
      */
 
-    private void broadcast(Observer[] list, Connection connection, Chat request) {
+    private void broadcast(Observer[] list, Chat indication) {
         for (int i = 0; i < list.length; i++) {
             PublicChat room = (PublicChat) list[i];
-            Chat       copy = (Chat) request.clone();
-            copy.setRoomName(room.name());
-            room.update(connection, copy);
+            indication.indication(room.name());
+            room.broadcastAll(indication);
         }
     }
 
@@ -54,6 +54,7 @@ public interface Msg {
     String EXPIRES            = "This evaluation copy expires on %0.";
     String EXPIRED            = "This evaluation copy expired on %0.";
     String BAD_LOG_FILE       = "Unable to open log file: %0";
+    String BAD_BAN_JOURNAL    = "Unable to open ban journal: %0";
     String CANNOT_START       = "Unable to start server: %0";
     String SHUTTING_DOWN      = "Server received shutdown request.";
     String NEW_LICENSE        = "Please obtain a new trial license key at www.volano.com.";
@@ -64,6 +65,9 @@ public interface Msg {
 
     // For Value.
     String NO_THREAD_GROUPS   = "Disabling the use of thread groups...";
+    String NIO                = "Enabling non-blocking connections...";
+    String VIRTUAL_THREADS    = "Enabling the use of virtual threads...";
+    String NO_VIRTUAL_THREADS = "Virtual threads are not supported by this Java runtime.";
     String BAD_PROPERTIES     = "Unable to load property file: %0";
     String PROPERTY_ERROR     = "Invalid value %1 for %0 (%2).";
     String NO_LICENSE         = "Please obtain a trial license key at www.volano.com.";
@@ -0,0 +1,118 @@
+/*
+ * NameIndex.java - a substring index of room names.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  java.util.*;
+import  java.util.concurrent.*;
+
+/**
+ * This class indexes room names by every substring of up to three characters
+ * in their lower case form, so that the rooms whose names contain a filter
+ * string can be found without looking at every room.  A search takes the
+ * smallest set of names sharing a substring with the filter and checks only
+ * those names for the whole filter.  Names are added and removed by a single
+ * thread at a time, while any number of threads search the index.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     PublicList#getNames(String)
+ */
+
+class NameIndex {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private static final int GRAM = 3;    // Length of the longest substring indexed
+
+    private ConcurrentHashMap grams = new ConcurrentHashMap();  // Maps substrings to names
+
+    /**
+     * Adds a name to the index.  Called with the lock on the room list held.
+     *
+     * @param name  the room name to add.
+     */
+
+    void add(String name) {
+        String lower = name.toLowerCase();
+        for (int i = 0; i < lower.length(); i++) {
+            for (int j = i + 1; j <= i + GRAM && j <= lower.length(); j++) {
+                String gram = lower.substring(i, j);
+                Map names = (Map) grams.get(gram);
+                if (names == null) {
+                    names = new ConcurrentHashMap();
+                    grams.put(gram, names);
+                }
+                names.put(name, lower);
+            }
+        }
+    }
+
+    /**
+     * Removes a name from the index.  Called with the lock on the room list
+     * held.
+     *
+     * @param name  the room name to remove.
+     */
+
+    void remove(String name) {
+        String lower = name.toLowerCase();
+        for (int i = 0; i < lower.length(); i++) {
+            for (int j = i + 1; j <= i + GRAM && j <= lower.length(); j++) {
+                String gram  = lower.substring(i, j);
+                Map    names = (Map) grams.get(gram);
+                if (names != null) {
+                    names.remove(name);
+                    if (names.isEmpty()) {
+                        grams.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the names containing the filter, ignoring case.
+     *
+     * @param filter  the filter substring, which must not be empty.
+     * @return  the names containing the filter, in no particular order.
+     */
+
+    Vector find(String filter) {
+        String lower = filter.toLowerCase();
+        Map    least = null;
+        for (int i = 0; i + GRAM <= lower.length() || i == 0; i++) {
+            Map names = (Map) grams.get(lower.substring(i, Math.min(i + GRAM, lower.length())));
+            if (names == null) {
+                return new Vector();          // No name has this substring
+            }
+            if (least == null || names.size() < least.size()) {
+                least = names;
+            }
+        }
+
+        Vector   vector   = new Vector();
+        Iterator iterator = least.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry entry = (Map.Entry) iterator.next();
+            if (((String) entry.getValue()).indexOf(lower) != -1) {
+                vector.addElement(entry.getKey());
+            }
+        }
+        return vector;
+    }
+}
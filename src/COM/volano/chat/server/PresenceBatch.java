@@ -0,0 +1,158 @@
+/*
+ * PresenceBatch.java - the users entering and leaving a room in an interval.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.chat.packet.RoomPacket;
+import  COM.volano.util.Message;
+import  java.util.*;
+
+/**
+ * This class collects the users entering and leaving a public chat room so
+ * that clients asking for presence indications receive them in one packet for
+ * each interval rather than one packet for each user.  When a room fills up
+ * all at once, such as after the server restarts, each user entering would
+ * otherwise cause an enter room indication to everyone already in the room.
+ *
+ * <p>The first user entering or leaving after an interval starts the next
+ * interval.  At its end, the users are sent in the order they entered or left
+ * by a single timer thread shared by all rooms.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     PublicChat#sendPresence
+ */
+
+class PresenceBatch {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private static final String THREAD_NAME = "PresenceBatch";
+
+    private static Timer timer;                 // Shared by all rooms, created when first needed
+
+    private PublicChat room;                    // Room sending the indications
+    private long       interval;                // Length of each interval in milliseconds
+    private Vector     entered = new Vector();  // Boolean true for entering, false for leaving
+    private Vector     users   = new Vector();  // User information in order
+    private boolean    scheduled;               // Waiting for the end of the interval
+
+    /**
+     * Creates a new batch of presence changes for a room.
+     *
+     * @param room      the public chat room.
+     * @param interval  the time in milliseconds over which to collect the users
+     *                  entering and leaving the room.
+     */
+
+    PresenceBatch(PublicChat room, long interval) {
+        this.room     = room;
+        this.interval = interval;
+    }
+
+    /**
+     * Gets the timer shared by all rooms, creating it if necessary.
+     *
+     * @return  the presence timer.
+     */
+
+    private static synchronized Timer getTimer() {
+        if (timer == null) {
+            timer = new Timer(THREAD_NAME, true);
+        }
+        return timer;
+    }
+
+    /**
+     * Adds a user entering the room.
+     *
+     * @param user  the user entering the room.
+     * @param host  the address of the user's host.
+     */
+
+    void enter(User user, String host) {
+        String[] info = new String[RoomPacket.MAX_USERINFO];
+        info[RoomPacket.NAME]    = user.getName();
+        info[RoomPacket.PROFILE] = user.getProfile();
+        info[RoomPacket.HOST]    = host;
+        info[RoomPacket.MEMBER]  = user.isMember();
+        info[RoomPacket.LINK]    = user.showLink();
+        add(Boolean.TRUE, info);
+    }
+
+    /**
+     * Adds a user leaving the room.
+     *
+     * @param name  the name of the user leaving the room.
+     */
+
+    void exit(String name) {
+        String[] info = new String[RoomPacket.MAX_USERINFO];
+        info[RoomPacket.NAME] = name;
+        add(Boolean.FALSE, info);
+    }
+
+    /**
+     * Adds a user entering or leaving the room, starting a new interval if none
+     * is in progress.
+     *
+     * @param enter  <code>Boolean.TRUE</code> if the user is entering;
+     *               <code>Boolean.FALSE</code> if the user is leaving.
+     * @param info   the user information.
+     */
+
+    private synchronized void add(Boolean enter, String[] info) {
+        entered.addElement(enter);
+        users.addElement(info);
+        if (! scheduled) {
+            scheduled = true;
+            getTimer().schedule(new TimerTask() {
+                public void run() {
+                    flush();
+                }
+            }, interval);
+        }
+    }
+
+    /**
+     * Sends the users who entered and left the room during the interval.
+     * Called on the timer thread at the end of the interval.
+     */
+
+    private void flush() {
+        boolean[]  enteredList;
+        String[][] userList;
+        synchronized (this) {
+            enteredList = new boolean[entered.size()];
+            for (int i = 0; i < enteredList.length; i++) {
+                enteredList[i] = ((Boolean) entered.elementAt(i)).booleanValue();
+            }
+            userList = new String[users.size()][];
+            users.copyInto(userList);
+            entered.removeAllElements();
+            users.removeAllElements();
+            scheduled = false;
+        }
+        try {
+            room.sendPresence(enteredList, userList);
+        } catch (ThreadDeath e) {
+            throw e;          // Rethrow for cleanup
+        } catch (Throwable t) {
+            Log.printError(Message.format(Msg.UNEXPECTED, THREAD_NAME), t);
+        }
+    }
+}
@@ -224,7 +224,7 @@ class PrivateChat extends Room implements Observer {
 
         // 2.1.10 - Do not trust "from" name given by client.
         request.setHandled();
-        connection.deleteObserver(this);
+        Dispatcher.remove(connection, this);
         if (fromConn != toConn) {
             String fromName = getName(connection);
             request.indication(fromName);
@@ -245,7 +245,7 @@ class PrivateChat extends Room implements Observer {
             System.out.println("Private " + roomId + " nullObject ...");
         }
 
-        connection.deleteObserver(this);
+        Dispatcher.remove(connection, this);
         if (fromConn != toConn) {
             ExitPrivate packet = new ExitPrivate(roomId, getName(connection));
             packet.indication();
@@ -264,6 +264,7 @@ class PrivateChat extends Room implements Observer {
             writeLog();
             count = 0;
             deleteObservers();
+            released();
         }
     }
 
@@ -0,0 +1,127 @@
+/*
+ * PrivateList.java - a list of private chat rooms.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.util.IntHashtable;
+import  java.util.Observer;
+
+/**
+ * This class maintains the list of private chat rooms.  The rooms are kept in
+ * a table with primitive integer keys, so that a private chat packet finds its
+ * room by the identifier it carries without creating an object or taking a
+ * lock.  A sweeper removes the rooms that stay empty.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Sweeper
+ */
+
+class PrivateList {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private IntHashtable rooms = new IntHashtable();  // Maps room identifiers to rooms
+    private Sweeper      sweeper;                     // Removes the empty rooms
+
+    /**
+     * Creates a new private room list.
+     *
+     * @param name      the name of this room list and its associated list
+     *                  <i>sweeper</i> thread.
+     * @param priority  the priority of the sweeper thread.
+     * @param interval  the time a room must stay empty before the sweeper
+     *                  thread removes it from the list.
+     */
+
+    PrivateList(String name, int priority, int interval) {
+        sweeper = new Sweeper(name, priority, interval) {
+            void remove(Object key) {
+                PrivateList.this.remove(key);
+            }
+        };
+    }
+
+    /**
+     * Gets a snapshot of the room list.
+     *
+     * @return  the rooms in the list at the time this method was called.
+     */
+
+    Observer[] snapshot() {
+        return (Observer[]) rooms.toArray(new Observer[0]);
+    }
+
+    /**
+     * Adds a private chat room to the list.
+     *
+     * @param key    the <code>Integer</code> identifier of the room.
+     * @param value  the private chat room.
+     * @return  the previous room in the list with this identifier, or
+     *          <code>null</code> if there was no such room.
+     */
+
+    Object put(Object key, Object value) {
+        ((Room) value).setSweeper(sweeper);
+        return rooms.put(((Integer) key).intValue(), value);
+    }
+
+    /**
+     * Removes a private chat room from the list.
+     *
+     * @param key  the <code>Integer</code> identifier of the room.
+     * @return  the room with the given identifier, or <code>null</code> if there
+     *          is no such room in the list.
+     */
+
+    Object remove(Object key) {
+        return rooms.remove(((Integer) key).intValue());
+    }
+
+    /**
+     * Gets a private chat room by its identifier.
+     *
+     * @param roomId  the identifier of the private chat room.
+     * @return  the private chat room, or <code>null</code> if there is no such
+     *          room in the list.
+     */
+
+    PrivateChat get(int roomId) {
+        return (PrivateChat) rooms.get(roomId);
+    }
+
+    /**
+     * Gets the number of private chat rooms in the list.
+     *
+     * @return  the number of rooms.
+     */
+
+    int size() {
+        return rooms.size();
+    }
+
+    /**
+     * Finalizes this object by stopping its sweeper thread.
+     *
+     * @exception java.lang.Throwable  if an error occurs finalizing this object.
+     */
+
+    protected void finalize() throws Throwable {
+        super.finalize();
+        sweeper.stop();
+    }
+}
@@ -39,12 +39,16 @@ class PublicChat extends Room implements Observer {
     private static final boolean TRACE = false;
 
     protected Value      value;
-    private   Grouptable privateList;
+    private   PrivateList privateList;
     protected String     groupName;
     protected int        roomType;
     private   String     documentBase;
     protected Usertable  usertable;       // Maps names and connections to users
     private   int        guestCount;      // Count of guests in room
+    private   Roster     hostRoster   = new Roster(true);   // Encoded users with hosts
+    private   Roster     noHostRoster = new Roster(false);  // Encoded users without hosts
+    private   Mailbox    mailbox;         // Packets not yet handled, or null
+    protected PresenceBatch presence;     // Users entering and leaving, or null
 
     /**
      * Creates a new private chat room.
@@ -55,13 +59,19 @@ class PublicChat extends Room implements Observer {
      * @param documentBase  the Web address from which this room was created.
      */
 
-    PublicChat(Value value, Grouptable privateList, String groupName, String documentBase) {
+    PublicChat(Value value, PrivateList privateList, String groupName, String documentBase) {
         this.value        = value;
         this.privateList  = privateList;
         this.groupName    = groupName;
         this.roomType     = RoomPacket.NORMAL;
         this.documentBase = documentBase;
         this.usertable    = new Usertable(value.roomLimit, value.usernameMatchcase);
+        if (Mailbox.isEnabled()) {
+            this.mailbox = new Mailbox(this);
+        }
+        if (value.roomPresenceDelay > 0) {
+            this.presence = new PresenceBatch(this, value.roomPresenceDelay);
+        }
     }
 
     /**
@@ -151,7 +161,9 @@ class PublicChat extends Room implements Observer {
      */
 
     synchronized int decrementGuest() {
-        return --guestCount;                // Return after decrement
+        int count = --guestCount;
+        released();
+        return count;                       // Return after decrement
     }
 
     /**
@@ -168,7 +180,8 @@ class PublicChat extends Room implements Observer {
 
     /**
      * Broadcasts the packet to all users in the room except the one with the
-     * specified connection.
+     * specified connection.  The packet is serialized once into a frame which
+     * is shared by all of the users.
      *
      * @param origin  the origin of the packet and the one on which to avoid
      *                sending.
@@ -177,22 +190,71 @@ class PublicChat extends Room implements Observer {
      */
 
     protected void broadcast(Connection origin, Packet packet) {
-        Connection connection = null;
-        User[]     list       = usertable.snapshot();
-        for (int i = 0; i < list.length; i++) {
-            connection = list[i].getConnection();
-            if (connection != origin) {
-                try {
-                    connection.send(packet);
-                } catch (IOException e) {}      // Error means connection is closed -- ignore
-            }
+        try {
+            broadcast(origin, newFrame(packet));
+        } catch (IOException e) {}  // Error means packet cannot be serialized -- ignore
+    }
+
+    /**
+     * Broadcasts an administrator message to everyone in the room.  The server
+     * calls this method directly for each room rather than passing a copy of the
+     * request through the room's packet handling, so the message is serialized
+     * once for the room and the packet can be reused for the next room.
+     *
+     * @param indication  the administrator chat indication, already set with the
+     *                    name of this room.
+     */
+
+    void broadcastAll(Chat indication) {
+        broadcast(null, indication);
+        notifyEvent(new ChatEvent(groupName, indication.getUserName(), indication.getText()));
+    }
+
+    /**
+     * Serializes a packet into a frame for broadcasting, marking the chat
+     * messages of users as frames that a slow connection may discard, and
+     * pairing the enter and exit room indications of each user so that they
+     * cancel each other in a full send queue.  Administrator broadcasts are
+     * never discarded.
+     *
+     * @param packet  the packet to serialize.
+     * @return  the frame holding the serialized packet.
+     * @exception java.io.IOException  if the packet cannot be serialized.
+     */
+
+    private static StreamableFrame newFrame(Packet packet) throws IOException {
+        StreamableFrame frame = new StreamableFrame(packet);
+        if (packet instanceof Chat && ((Chat) packet).getUserName().length() > 0) {
+            frame.setDisposition(StreamableFrame.DROP, null);
+        } else if (packet instanceof EnterRoom) {
+            EnterRoom enter = (EnterRoom) packet;
+            frame.setDisposition(StreamableFrame.ENTER, enter.getRoomName() + "\n" + enter.getUserName());
+        } else if (packet instanceof ExitRoom) {
+            ExitRoom exit = (ExitRoom) packet;
+            frame.setDisposition(StreamableFrame.EXIT, exit.getRoomName() + "\n" + exit.getUserName());
         }
+        return frame;
+    }
+
+    /**
+     * Broadcasts the serialized packet to all users in the room except the one
+     * with the specified connection.  The users of a very large room are sent
+     * the packet in parallel.
+     *
+     * @param origin  the origin of the packet and the one on which to avoid
+     *                sending.
+     * @param frame   the serialized packet to send to all users except for the
+     *                packet's origin.
+     */
+
+    protected void broadcast(Connection origin, StreamableFrame frame) {
+        FanOut.send(usertable.snapshot(), origin, frame, null);
     }
 
     /**
      * Broadcasts the packet to all users in the room except the one with the
      * specified connection, and sends a different packet to monitors than to
-     * normal users.
+     * normal users.  Each packet is serialized at most once.
      *
      * @param origin  the origin of the packet and the one on which to avoid
      *                sending.
@@ -201,16 +263,44 @@ class PublicChat extends Room implements Observer {
      */
 
     protected void broadcast(Connection origin, Packet normalPacket, Packet monitorPacket) {
-        Connection connection = null;
-        User[]     list       = usertable.snapshot();
+        broadcast(usertable.snapshot(), origin, normalPacket, monitorPacket);
+    }
+
+    /**
+     * Broadcasts the packet to a list of users except the one with the specified
+     * connection, sending a different packet to monitors than to normal users.
+     *
+     * @param list    the users receiving the packet.
+     * @param origin  the origin of the packet and the one on which to avoid
+     *                sending, or <code>null</code> to send to all.
+     * @param normalPacket   the packet for normal users.
+     * @param monitorPacket  the packet for monitors.
+     */
+
+    private void broadcast(User[] list, Connection origin, Packet normalPacket, Packet monitorPacket) {
+        Connection      connection   = null;
+        StreamableFrame normalFrame  = null;
+        StreamableFrame monitorFrame = null;
+        if (FanOut.isParallel(list.length)) {
+            try {
+                FanOut.send(list, origin, newFrame(normalPacket), newFrame(monitorPacket));
+            } catch (IOException e) {}          // Error means packet cannot be serialized -- ignore
+            return;
+        }
         for (int i = 0; i < list.length; i++) {
             connection = list[i].getConnection();
             if (connection != origin) {
                 try {
                     if (connection.getBoolean(Attr.IS_MONITOR)) {
-                        connection.send(monitorPacket);
+                        if (monitorFrame == null) {
+                            monitorFrame = newFrame(monitorPacket);
+                        }
+                        connection.send(monitorFrame);
                     } else {
-                        connection.send(normalPacket);
+                        if (normalFrame == null) {
+                            normalFrame = newFrame(normalPacket);
+                        }
+                        connection.send(normalFrame);
                     }
                 } catch (IOException e) {}      // Error means connection is closed -- ignore
             }
@@ -218,29 +308,109 @@ class PublicChat extends Room implements Observer {
     }
 
     /**
-     * Gets a list of all users in the room with their associated profiles, host
-     * names, and member strings.
+     * Announces a user entering or leaving the room.  Without presence batches,
+     * the packets are broadcast to everyone in the room but the user.  With
+     * them, the packets go only to the users whose clients did not ask for
+     * presence indications, and the others receive the change at the end of
+     * the current interval.
+     *
+     * @param origin         the connection of the user entering or leaving.
+     * @param user           the user entering, or <code>null</code> if the user
+     *                       is leaving.
+     * @param name           the name of the user.
+     * @param normalPacket   the packet for normal users.
+     * @param monitorPacket  the packet for monitors.
+     */
+
+    private void announce(Connection origin, User user, String name, Packet normalPacket, Packet monitorPacket) {
+        if (presence == null) {
+            if (normalPacket == monitorPacket) {
+                broadcast(origin, normalPacket);
+            } else {
+                broadcast(origin, normalPacket, monitorPacket);
+            }
+        } else {
+            if (user != null) {
+                presence.enter(user, origin.getHostAddress());
+            } else {
+                presence.exit(name);
+            }
+            broadcast(select(usertable.snapshot(), false), origin, normalPacket, monitorPacket);
+        }
+    }
+
+    /**
+     * Sends the users who entered and left the room during an interval to the
+     * users whose clients asked for presence indications.  Called by the
+     * presence batch at the end of each interval.
+     *
+     * @param entered  for each user, <code>true</code> if the user entered the
+     *                 room, or <code>false</code> if the user left.
+     * @param users    the information of each user, in order.
+     */
+
+    void sendPresence(boolean[] entered, String[][] users) {
+        User[] list = select(usertable.snapshot(), true);
+        if (list.length > 0) {
+            Presence normal  = new Presence(groupName);
+            Presence monitor = new Presence(groupName);
+            normal.indication(entered, users, value.addressBroadcast);
+            monitor.indication(entered, users, true);
+            broadcast(list, null, normal, monitor);
+        }
+    }
+
+    /**
+     * Selects the users with or without presence indications.
      *
-     * @return  an array of users, each consisting of an array of strings with the
-     *          user name, profile, host name, and member string.
+     * @param list      the users in the room.
+     * @param presence  <code>true</code> to select the users receiving presence
+     *                  indications; <code>false</code> to select the others.
+     * @return  the selected users, which is the same array if all are selected.
      */
 
-    protected String[][] getUserInfo(boolean includeHost) {
-        User[]     list      = usertable.snapshot();
-        String[][] userArray = new String[list.length][RoomPacket.MAX_USERINFO];
+    private static User[] select(User[] list, boolean presence) {
+        int count = 0;
         for (int i = 0; i < list.length; i++) {
-            userArray[i][RoomPacket.NAME]    = list[i].getName();
-            userArray[i][RoomPacket.PROFILE] = list[i].getProfile();
-            userArray[i][RoomPacket.HOST]    = includeHost ? list[i].getConnection().getHostAddress() : "";
-            userArray[i][RoomPacket.MEMBER]  = list[i].isMember();
-            userArray[i][RoomPacket.LINK]    = list[i].showLink();
+            if (list[i].getPresence() == presence) {
+                count++;
+            }
+        }
+        if (count == list.length) {
+            return list;
+        }
+        User[] selected = new User[count];
+        for (int i = 0, j = 0; i < list.length; i++) {
+            if (list[i].getPresence() == presence) {
+                selected[j++] = list[i];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Gets the encoded list of all users in the room with their associated
+     * profiles, host names, and member strings.  The list is encoded again only
+     * when users have entered or left the room since it was last requested.
+     *
+     * @param includeHost  <code>true</code> to include the host address of each
+     *                     user; otherwise <code>false</code>.
+     * @return  the number of users followed by the user name, profile, host
+     *          name, member string, and link string of each user.
+     */
+
+    protected byte[] getRoster(boolean includeHost) {
+        try {
+            return (includeHost ? hostRoster : noHostRoster).getBytes(usertable.snapshot());
+        } catch (IOException e) {       // Error means a user cannot be encoded -- send none
+            return new byte[4];
         }
-        return userArray;
     }
 
     /**
      * Called when a packet is received from the client, or when the connection to
-     * the client is closed.
+     * the client is closed.  If the room has a mailbox, the packet is handled
+     * later on the room's turn; otherwise it is handled now.
      *
      * @param observable  the connection to the client.
      * @param object      the packet received from the client, or
@@ -248,6 +418,42 @@ class PublicChat extends Room implements Observer {
      */
 
     public void update(Observable observable, Object object) {
+        if (mailbox != null) {
+            mailbox.post(observable, object, null);
+        } else {
+            process(observable, object);
+        }
+    }
+
+    /**
+     * Adds a packet to the room's mailbox, to be passed on to another observer
+     * once the room has handled it.
+     *
+     * @param observable  the connection to the client.
+     * @param object      the packet received from the client.
+     * @param next        the observer which handles the packet after the room.
+     * @return  <code>true</code> if the packet was added to the mailbox;
+     *          <code>false</code> if the room has no mailbox.
+     */
+
+    boolean post(Observable observable, Object object, Observer next) {
+        if (mailbox == null) {
+            return false;
+        }
+        mailbox.post(observable, object, next);
+        return true;
+    }
+
+    /**
+     * Handles a packet received from the client, or the closing of the
+     * connection to the client.
+     *
+     * @param observable  the connection to the client.
+     * @param object      the packet received from the client, or
+     *                    <code>null</code> if the connection is closed.
+     */
+
+    void process(Observable observable, Object object) {
         if (Build.UPDATE_TRACE) {
             System.out.println(groupName + " update ...");
         }
@@ -264,7 +470,17 @@ class PublicChat extends Room implements Observer {
                 } else if (packet instanceof UserList) {
                     userListRequest(connection, (UserList) packet);
                 } else if (packet instanceof EnterRoom) {
-                    enterRoomRequest(connection, (EnterRoom) packet);
+                    // The room may have been removed from its list since the
+                    // request was added to its mailbox.
+                    synchronized (this) {
+                        if (isRemoved()) {
+                            packet.setHandled();
+                            ((EnterRoom) packet).confirm(EnterRoom.NO_SUCH_ROOM);
+                            send(connection, packet);
+                        } else {
+                            enterRoomRequest(connection, (EnterRoom) packet);
+                        }
+                    }
                 } else if (packet instanceof EnterPrivate) {
                     enterPrivateRequest(connection, (EnterPrivate) packet);
                 } else if (packet instanceof ExitRoom) {
@@ -275,6 +491,8 @@ class PublicChat extends Room implements Observer {
                     kickRequest(connection, (Kick) packet);
                 } else if (packet instanceof Whisper) {
                     whisperRequest(connection, (Whisper) packet);
+                } else if (packet instanceof Presence) {
+                    presenceRequest(connection, (Presence) packet);
                 }
             }
         } else if (object == null) {
@@ -311,18 +529,18 @@ class PublicChat extends Room implements Observer {
             User user   = new User(connection, userName, profile);
             int  result = usertable.putUser(user, connection.getBoolean(Attr.IS_MONITOR));
             if (result == EnterRoom.OKAY) {
-                connection.addObserver(this);
+                Dispatcher.add(connection, this);
                 String host = connection.getHostAddress();
                 EnterRoom hostCopy = (EnterRoom) request.clone();
                 hostCopy.indication(host, user.isMember(), user.showLink());
                 if (value.addressBroadcast) {
-                    broadcast(connection, hostCopy);
+                    announce(connection, user, userName, hostCopy, hostCopy);
                 } else {
                     EnterRoom noHostCopy = (EnterRoom) request.clone();
                     noHostCopy.indication("", user.isMember(), user.showLink());
-                    broadcast(connection, noHostCopy, hostCopy);
+                    announce(connection, user, userName, noHostCopy, hostCopy);
                 }
-                request.confirm(result, roomType, count(), getUserInfo(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
+                request.confirm(result, roomType, count(), getRoster(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
                 notifyEvent(new EnterEvent(groupName, userName, host, profile, user.getMember()));
             } else {
                 request.confirm(result);
@@ -362,7 +580,7 @@ class PublicChat extends Room implements Observer {
                 Connection  toConn = toUser.getConnection();
                 PrivateChat room   = new PrivateChat(value, groupName, connection, fromName, toConn, toName);
                 privateList.put(room.key(), room);
-                connection.addObserver(room);
+                Dispatcher.add(connection, room);
                 // FIXME:
                 // We need to add both connections as observers here:
                 //   toConn.addObserver(room);
@@ -402,7 +620,7 @@ class PublicChat extends Room implements Observer {
         }
 
         request.setHandled();
-        request.confirm(UserList.OKAY, roomType, documentBase, getUserInfo(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
+        request.confirm(UserList.OKAY, roomType, documentBase, getRoster(value.addressBroadcast || connection.getBoolean(Attr.IS_MONITOR)));
         send(connection, request);
     }
 
@@ -484,6 +702,28 @@ class PublicChat extends Room implements Observer {
         }
     }
 
+    /**
+     * Handles a presence request, after which the client receives the users
+     * entering and leaving the room in presence indications.  If the room does
+     * not collect presence changes, the client continues to receive enter and
+     * exit room indications.
+     *
+     * @param connection  the connection to the client.
+     * @param request     the presence request.
+     */
+
+    protected void presenceRequest(Connection connection, Presence request) {
+        if (Build.UPDATE_TRACE) {
+            System.out.println(groupName + " presenceRequest ...");
+        }
+
+        request.setHandled();
+        User user = usertable.getUser(connection.getId());
+        if (user != null && presence != null) {
+            user.setPresence(true);
+        }
+    }
+
     /**
      * Handles a beep request.
      *
@@ -534,12 +774,13 @@ class PublicChat extends Room implements Observer {
                 // administrators or themselves.
                 if (! targetConnection.getBoolean(Attr.IS_MONITOR)) {
                     if (method == Kick.REMOVE) {
-                        targetConnection.deleteObserver(this);
+                        Dispatcher.remove(targetConnection, this);
                         user = usertable.removeUser(name);
                         if (user != null) {
+                            released();
                             ExitRoom packet = new ExitRoom(groupName, name);
                             packet.indication();
-                            broadcast(targetConnection, packet);
+                            announce(targetConnection, null, name, packet, packet);
                             send(targetConnection, packet);
                             writeLog(user);
                         }
@@ -604,7 +845,7 @@ class PublicChat extends Room implements Observer {
         }
 
         request.setHandled();
-        connection.deleteObserver(this);
+        Dispatcher.remove(connection, this);
         // 2.1.10 - Don't trust the client to specify the same name used to enter.
         // Instead, handle this one just like the nullObject method.  This method
         // assumes a connection is allowed to have only one user in a given room.
@@ -612,9 +853,10 @@ class PublicChat extends Room implements Observer {
         // User   user = usertable.removeUser(name);
         User user = usertable.removeUser(connection.getId());   // 2.1.10
         if (user != null) {
+            released();
             String name = user.getName();                     // 2.1.10
             request.indication(name);                         // 2.1.10
-            broadcast(connection, request);
+            announce(connection, null, name, request, request);
             writeLog(user);
             notifyEvent(new ExitEvent(groupName, name));
         }
@@ -636,13 +878,14 @@ class PublicChat extends Room implements Observer {
             System.out.println(groupName + " nullObject ...");
         }
 
-        connection.deleteObserver(this);
+        Dispatcher.remove(connection, this);
         User user = usertable.removeUser(connection.getId());
         if (user != null) {
+            released();
             String   name   = user.getName();
             ExitRoom packet = new ExitRoom(groupName, name);
             packet.indication();
-            broadcast(connection, packet);
+            announce(connection, null, name, packet, packet);
             writeLog(user);
             notifyEvent(new ExitEvent(groupName, name));
         }
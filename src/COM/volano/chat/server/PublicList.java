@@ -22,7 +22,14 @@ import  java.net.*;
 import  java.util.*;
 
 /**
- * This class maintains a list of public or personal rooms.
+ * This class maintains a list of public or personal rooms.  Rooms are found
+ * without locking the list.  The lock on the list is held only while a room is
+ * added or removed, keeping the list of names in order and the pending room
+ * observers.
+ *
+ * <p>The names of the rooms are also kept in an array, replaced whenever a
+ * room is added or removed, which is returned to all callers until the next
+ * change, and in a substring index for finding the rooms that match a filter.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
@@ -31,8 +38,35 @@ import  java.util.*;
 class PublicList extends Grouptable {
     public static final String COPYRIGHT = Build.COPYRIGHT;
 
-    private Vector    nameList;   // List of room names
-    private Hashtable pending;    // Maps room names to list of pending observers
+    private Vector         nameList;   // List of room names
+    private Hashtable      pending;    // Maps room names to list of pending observers
+    private NameIndex      nameIndex;  // Index of room names by substring
+    private volatile Names names;      // Snapshot of the list of room names
+
+    /**
+     * A snapshot of the list of room names, which is never modified.  The
+     * positions of the names are found only when the snapshot is first
+     * filtered, since most snapshots are replaced before they are filtered.
+     */
+
+    private static final class Names {
+        private String[]  list;       // Room names in order
+        private Hashtable ranks;      // Maps room names to their positions, or null
+
+        private Names(Vector vector) {
+            list = (String[]) vector.toArray(new String[0]);
+        }
+
+        private synchronized Hashtable getRanks() {
+            if (ranks == null) {
+                ranks = new Hashtable(list.length * 2 + 1);
+                for (int i = list.length - 1; i >= 0; i--) {
+                    ranks.put(list[i], new Integer(i));
+                }
+            }
+            return ranks;
+        }
+    }
 
     /**
      * Creates a new public room list.
@@ -46,8 +80,10 @@ class PublicList extends Grouptable {
 
     PublicList(String name, int priority, int interval) {
         super(name, priority, interval);
-        nameList = new Vector(size());
-        pending  = new Hashtable();
+        nameList  = new Vector(size());
+        pending   = new Hashtable();
+        nameIndex = new NameIndex();
+        names     = new Names(nameList);
     }
 
     /**
@@ -60,18 +96,23 @@ class PublicList extends Grouptable {
      * @param url   the callback URL to receive each event as an HTTP POST.
      */
 
-    public synchronized void addRoomObserver(String name, URL url) {
-        Observable room = (Observable) super.get(name);
-        if (room == null) {                 // Room not yet created
-            Vector urlList = (Vector) pending.get(name);
-            if (urlList == null) {            // First observer of this room
-                urlList = new Vector();
+    // The observer of an existing room is added after releasing the lock on
+    // this list, since the sweeper thread locks the room and then this list.
+    public void addRoomObserver(String name, URL url) {
+        Observable room;
+        synchronized (this) {
+            room = (Observable) super.get(name);
+            if (room == null) {               // Room not yet created
+                Vector urlList = (Vector) pending.get(name);
+                if (urlList == null) {          // First observer of this room
+                    urlList = new Vector();
+                }
+                urlList.addElement(url);
+                pending.put(name, urlList);
+                return;
             }
-            urlList.addElement(url);
-            pending.put(name, urlList);
-        } else {                            // Room already exists
-            new EventSender(room, url);
         }
+        new EventSender(room, url);         // Room already exists
     }
 
     /**
@@ -106,10 +147,14 @@ class PublicList extends Grouptable {
     // Don't call this "put" since Hashtable.put has a recursive call when the
     // table is rehashed.  The recursive call to "put" causes us to add the room
     // name to our Vector twice.
+    // Observers are added before the room is in the table, since the sweeper
+    // thread may lock the room and then this list once the room is found.
     public synchronized Object add(String name, PublicChat room) {
-        nameList.addElement(name);          // Add name to vector
-        Object old = super.put(name, room); // Add pair to hashtable
         addPendingObservers(name, room);    // Add and notify pending observers
+        Object old = super.put(name, room); // Add pair to hashtable
+        nameList.addElement(name);          // Add name to vector
+        nameIndex.add(name);                // Add name to index
+        names = new Names(nameList);
         return old;
     }
 
@@ -123,9 +168,11 @@ class PublicList extends Grouptable {
      */
 
     public synchronized Object addFirst(String name, PublicChat room) {
-        nameList.insertElementAt(name, 0);  // Add name as first element in vector
-        Object old = super.put(name, room); // Add pair to hashtable
         addPendingObservers(name, room);    // Add and notify pending observers
+        Object old = super.put(name, room); // Add pair to hashtable
+        nameList.insertElementAt(name, 0);  // Add name as first element in vector
+        nameIndex.add(name);                // Add name to index
+        names = new Names(nameList);
         return old;
     }
 
@@ -141,19 +188,25 @@ class PublicList extends Grouptable {
     // call this method when it calls remove(Object).
     public synchronized Object remove(Object name) {
         nameList.removeElement(name);       // Remove name from vector
+        if (! nameList.contains(name)) {
+            nameIndex.remove((String) name);  // Remove name from index
+        }
+        names = new Names(nameList);
         PublicChat room = (PublicChat) super.remove(name);  // Remove pair
         room.removeNotify();                // Notify and remove all observers
         return room;
     }
 
     /**
-     * Gets the names of all the rooms in the list.
+     * Gets the names of all the rooms in the list.  The array is shared by all
+     * callers until the next room is added or removed, so it must not be
+     * modified.
      *
      * @return  the list of room names for all the rooms in the server.
      */
 
-    synchronized String[] getNames() {
-        return (String[]) nameList.toArray(new String[0]);
+    String[] getNames() {
+        return names.list;
     }
 
     /**
@@ -164,19 +217,29 @@ class PublicList extends Grouptable {
      * @return  the list of room names with the specified substring.
      */
 
-    synchronized String[] getNames(String filter) {
-        String[] list = getNames();
+    String[] getNames(String filter) {
+        Names current = names;
         if (filter.length() == 0) {
-            return list;
+            return current.list;
         }
 
-        filter = filter.toLowerCase();
-        Vector vector = new Vector();
-        for (int i = 0; i < list.length; i++) {
-            if (list[i].toLowerCase().indexOf(filter) != -1) {
-                vector.addElement(list[i]);
+        // Put the names found back in the order of the list, skipping any name
+        // added or removed since the snapshot was taken.
+        Vector    found     = nameIndex.find(filter);
+        Hashtable positions = current.getRanks();
+        int[]     ranks     = new int[found.size()];
+        int       count     = 0;
+        for (int i = 0; i < ranks.length; i++) {
+            Integer rank = (Integer) positions.get(found.elementAt(i));
+            if (rank != null) {
+                ranks[count++] = rank.intValue();
             }
         }
-        return (String[]) vector.toArray(new String[0]);
+        Arrays.sort(ranks, 0, count);
+        String[] list = new String[count];
+        for (int i = 0; i < count; i++) {
+            list[i] = current.list[ranks[i]];
+        }
+        return list;
     }
 }
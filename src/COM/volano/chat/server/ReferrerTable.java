@@ -0,0 +1,223 @@
+/*
+ * ReferrerTable.java - a compiled table of the referrers allowed and denied.
+ * Copyright (C) 1996-2002 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+
+import java.util.*;
+
+/**
+ * This class compiles the lists of referring URLs allowed and denied access
+ * into a character trie, so that the longest allowed and denied entries
+ * matching a referrer are found in one pass over its characters.  An entry
+ * matches the whole referrer, or the part of it before any slash following the
+ * host name, with or without a trailing slash.  So both
+ * <code>http://www.volano.com/vcclient</code> and
+ * <code>http://www.volano.com/vcclient/</code> match
+ * <code>http://www.volano.com/vcclient/chat.html</code>.  Otherwise an entry
+ * of only the protocol, such as <code>http:</code> or <code>http://</code>,
+ * matches every referrer with that protocol.
+ *
+ * <p>The decisions for the most recent referrers are kept in a small cache,
+ * since most clients are loaded from the same few Web pages.  A new table, with
+ * an empty cache, replaces the old one whenever either list is loaded.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     AccessControl#isReferrerAllowed
+ */
+
+class ReferrerTable {
+    private static final int    CACHE_SIZE         = 256;   // Most referrers in the cache
+    private static final char   URL_PATH_SEPARATOR = '/';
+    private static final char   PROTOCOL_SUFFIX    = ':';
+    private static final int    AUTHORITY_LENGTH   = 3;     // Length of "://"
+
+    // Flags of the entries in the trie.
+    private static final int ALLOWED = 1;
+    private static final int DENIED  = 2;
+
+    private Node root = new Node();
+    private Map  cache;              // Maps recent referrers to Boolean decisions
+
+    /**
+     * A prefix of the entries in the trie.
+     */
+
+    private static final class Node {
+        private char[] keys     = new char[0];    // Next characters of longer entries
+        private Node[] children = new Node[0];    // Nodes of the next characters
+        private int    flags;                     // Flags of the entry ending here, or 0
+
+        private Node child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node addChild(char key) {
+            Node node = child(key);
+            if (node == null) {
+                int length = keys.length;
+                char[] newKeys     = new char[length + 1];
+                Node[] newChildren = new Node[length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, length);
+                System.arraycopy(children, 0, newChildren, 0, length);
+                node = new Node();
+                newKeys[length]     = key;
+                newChildren[length] = node;
+                keys     = newKeys;
+                children = newChildren;
+            }
+            return node;
+        }
+    }
+
+    /**
+     * Creates a new referrer table.
+     *
+     * @param allowed  the table whose keys are the referrers allowed access.
+     * @param denied   the table whose keys are the referrers denied access.
+     */
+
+    ReferrerTable(Hashtable allowed, Hashtable denied) {
+        add(allowed, ALLOWED);
+        add(denied, DENIED);
+        cache = new LinkedHashMap(CACHE_SIZE, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Adds the entries in a table to the trie.
+     *
+     * @param table  the table whose keys are the entries.
+     * @param flag   the flag of the entries.
+     */
+
+    private void add(Hashtable table, int flag) {
+        Enumeration enumeration = table.keys();
+        while (enumeration.hasMoreElements()) {
+            String entry = (String) enumeration.nextElement();
+            Node   node  = root;
+            for (int i = 0; i < entry.length(); i++) {
+                node = node.addChild(entry.charAt(i));
+            }
+            node.flags |= flag;
+        }
+    }
+
+    /**
+     * Checks whether the specified referring URL is allowed access, using the
+     * cached decision if the URL was checked recently.
+     *
+     * @param url  the referring URL to check.
+     * @return  <code>true</code> if the referring URL is allowed access;
+     *          otherwise <code>false</code>.
+     */
+
+    boolean isAllowed(String url) {
+        Boolean decision;
+        synchronized (cache) {
+            decision = (Boolean) cache.get(url);
+        }
+        if (decision == null) {
+            decision = check(url.toLowerCase()) ? Boolean.TRUE : Boolean.FALSE;
+            synchronized (cache) {
+                cache.put(url, decision);
+            }
+        }
+        return decision.booleanValue();
+    }
+
+    /**
+     * Checks the referring URL against the trie.  The referrer is allowed when
+     * its longest allowed entry is at least as long as its longest denied
+     * entry, including when neither list has an entry for it.
+     *
+     * @param spec  the referring URL in lower case.
+     * @return  <code>true</code> if the referring URL is allowed access;
+     *          otherwise <code>false</code> or if it has no valid protocol.
+     */
+
+    private boolean check(String spec) {
+        int colon = spec.indexOf(PROTOCOL_SUFFIX);
+        if (! isProtocol(spec, colon)) {
+            return false;
+        }
+        int  first      = colon + AUTHORITY_LENGTH;   // First slash after "http://"
+        int  allowScore = -1;
+        int  denyScore  = -1;
+        Node node       = root;
+        for (int i = 0; node != null; i++) {
+            boolean end   = i == spec.length();
+            int     flags = 0;
+            if (end || (i >= first && spec.charAt(i) == URL_PATH_SEPARATOR)) {
+                flags = node.flags | flagsOf(node.child(URL_PATH_SEPARATOR));
+            } else if (i == colon + 1) {
+                Node slash = node.child(URL_PATH_SEPARATOR);
+                flags = node.flags | flagsOf(slash == null ? null : slash.child(URL_PATH_SEPARATOR));
+            }
+            if ((flags & ALLOWED) != 0) {
+                allowScore = i;
+            }
+            if ((flags & DENIED) != 0) {
+                denyScore = i;
+            }
+            node = end ? null : node.child(spec.charAt(i));
+        }
+        return allowScore >= denyScore;
+    }
+
+    /**
+     * Gets the flags of an entry in the trie.
+     *
+     * @param node  the node of the entry, or <code>null</code>.
+     * @return  the flags of the entry, or 0 if there is no such entry.
+     */
+
+    private static int flagsOf(Node node) {
+        return node == null ? 0 : node.flags;
+    }
+
+    /**
+     * Checks whether the URL begins with a valid protocol name.
+     *
+     * @param spec   the URL in lower case.
+     * @param colon  the index of the first colon in the URL.
+     * @return  <code>true</code> if the characters before the colon are a
+     *          protocol name; otherwise <code>false</code>.
+     */
+
+    private static boolean isProtocol(String spec, int colon) {
+        if (colon < 1 || spec.charAt(0) < 'a' || spec.charAt(0) > 'z') {
+            return false;
+        }
+        for (int i = 1; i < colon; i++) {
+            char c = spec.charAt(i);
+            if (! ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -31,6 +31,11 @@ import  java.util.Observable;
 abstract class Room extends Observable {
     public static final String COPYRIGHT = Build.COPYRIGHT;
 
+    private Sweeper sweeper;              // Sweeper of the list holding this room
+    private boolean removed;              // Removed from its list of rooms
+    private long    emptyTime;            // Time the room last became empty
+    private Object  retirement;           // Pending removal from the list, if any
+
     /**
      * Notifies room observers of the event.
      *
@@ -58,4 +63,70 @@ abstract class Room extends Observable {
      */
 
     abstract int size();
+
+    /**
+     * Sets the sweeper of the list of rooms holding this room.
+     *
+     * @param sweeper  the sweeper of the list to which this room was added.
+     */
+
+    void setSweeper(Sweeper sweeper) {
+        this.sweeper = sweeper;
+    }
+
+    /**
+     * Called when a user or guest leaves the room.  If the room is now empty,
+     * its removal from the list of rooms is scheduled unless it is already
+     * pending.
+     */
+
+    synchronized void released() {
+        if (sweeper != null && ! removed && size() == 0) {
+            emptyTime = System.currentTimeMillis();
+            if (retirement == null) {
+                retirement = sweeper.schedule(this, emptyTime);
+            }
+        }
+    }
+
+    /**
+     * Called when a scheduled removal of the room comes due.  The room is
+     * marked as removed if it is still empty and has been empty for the whole
+     * delay.  If it became empty again since the removal was scheduled, the
+     * removal is scheduled again from that time.  Called with the lock on the
+     * room held, so that no user can enter the room once it is marked.
+     *
+     * @param retirement  the scheduled removal.
+     * @param time        the time the room was empty when it was scheduled.
+     * @return  <code>true</code> if the room should be removed from the list;
+     *          otherwise <code>false</code>.
+     */
+
+    synchronized boolean retire(Object retirement, long time) {
+        if (retirement != this.retirement) {
+            return false;                   // Superseded
+        }
+        this.retirement = null;
+        if (removed || size() != 0) {
+            return false;
+        }
+        if (emptyTime > time) {
+            this.retirement = sweeper.schedule(this, emptyTime);
+            return false;
+        }
+        removed = true;
+        return true;
+    }
+
+    /**
+     * Checks whether the room was removed from its list of rooms.  Called with
+     * the lock on the room held.
+     *
+     * @return  <code>true</code> if the room was removed; otherwise
+     *          <code>false</code>.
+     */
+
+    boolean isRemoved() {
+        return removed;
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Roster.java - the encoded list of users in a chat room.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.net.UTFCodec;
+import  java.io.*;
+
+/**
+ * This class keeps the list of users in a chat room encoded as it is sent in
+ * enter room and user list confirmations, so that the list is not rebuilt and
+ * encoded again for each confirmation.  A room keeps one roster with the host
+ * addresses of its users and one without.
+ *
+ * <p>The array of users from the room's user table serves as the version of
+ * the roster, since the table replaces the array whenever a user enters or
+ * leaves.  When users have only entered since the roster was last encoded, the
+ * new users are appended to the encoded list; when any user has left, the list
+ * is encoded again from the start.  Each caller gets its own copy of the
+ * encoded bytes.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Usertable#snapshot
+ */
+
+class Roster {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private static final User[] EMPTY = new User[0];
+
+    private boolean               includeHost;
+    private User[]                list   = EMPTY;        // Users encoded so far
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private DataOutputStream      output = new DataOutputStream(buffer);
+
+    /**
+     * Creates a new roster.
+     *
+     * @param includeHost  <code>true</code> to include the host address of each
+     *                     user; otherwise <code>false</code>.
+     */
+
+    Roster(boolean includeHost) {
+        this.includeHost = includeHost;
+    }
+
+    /**
+     * Gets the encoded list of users, giving the number of users followed by
+     * the name, profile, host address, member flag, and link flag of each user.
+     *
+     * @param users  the current array of users in the room.
+     * @return  a copy of the encoded list of users.
+     * @exception java.io.IOException  if a user cannot be encoded.
+     */
+
+    synchronized byte[] getBytes(User[] users) throws IOException {
+        int start = startsWith(users, list) ? list.length : 0;
+        if (start == 0) {
+            buffer.reset();
+            output.writeInt(0);               // Count is filled in on each copy
+        }
+        list = EMPTY;                         // Encoded again if a user fails
+        for (int i = start; i < users.length; i++) {
+            User user = users[i];
+            UTFCodec.write(output, user.getName());
+            UTFCodec.write(output, user.getProfile());
+            UTFCodec.write(output, includeHost ? user.getConnection().getHostAddress() : "");
+            UTFCodec.write(output, user.isMember());
+            UTFCodec.write(output, user.showLink());
+        }
+        list = users;
+
+        byte[] bytes = buffer.toByteArray();
+        int    count = users.length;
+        bytes[0] = (byte) (count >>> 24);
+        bytes[1] = (byte) (count >>> 16);
+        bytes[2] = (byte) (count >>> 8);
+        bytes[3] = (byte) count;
+        return bytes;
+    }
+
+    /**
+     * Checks whether one array of users begins with all the users of another.
+     *
+     * @param users   the current array of users.
+     * @param prefix  the array of users already encoded.
+     * @return  <code>true</code> if the current users begin with those already
+     *          encoded; otherwise <code>false</code>.
+     */
+
+    private static boolean startsWith(User[] users, User[] prefix) {
+        if (users == prefix) {
+            return true;
+        }
+        if (users.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (users[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
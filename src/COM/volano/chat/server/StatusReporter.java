@@ -36,11 +36,11 @@ class StatusReporter extends Observable implements Runnable {
 
     private static final String THREAD_NAME = "StatusReporter";
 
-    private long       interval;
-    private PublicList roomList;
-    private PublicList personalList;
-    private Grouptable privateList;
-    private Runtime    runtime;
+    private long        interval;
+    private PublicList  roomList;
+    private PublicList  personalList;
+    private PrivateList privateList;
+    private Runtime     runtime;
 
     private boolean keepReporting;
     private Thread  reporter;
@@ -56,6 +56,10 @@ class StatusReporter extends Observable implements Runnable {
     private int  privateCount;
     private long receivedCount;
     private long sentCount;
+    private int  queuedCount;
+    private long queuedBytes;
+    private long shardCount;
+    private long shardTime;
 
     /**
      * Creates a new status reporter.
@@ -67,7 +71,7 @@ class StatusReporter extends Observable implements Runnable {
      * @param privateList   the list of private chat rooms.
      */
 
-    StatusReporter(int seconds, PublicList roomList, PublicList personalList, Grouptable privateList) {
+    StatusReporter(int seconds, PublicList roomList, PublicList personalList, PrivateList privateList) {
         this.roomList     = roomList;
         this.personalList = personalList;
         this.privateList  = privateList;
@@ -144,6 +148,12 @@ class StatusReporter extends Observable implements Runnable {
                 privateCount    = privateList.size();
                 receivedCount   = Connection.getReceived();
                 sentCount       = Connection.getSent();
+                queuedCount     = Connection.getQueuedCount();
+                queuedBytes     = Connection.getQueuedBytes();
+                shardCount      = FanOut.getShardCount();
+                shardTime       = FanOut.getShardTime();
+                setChanged();
+                notifyObservers(new QueueReport(queuedCount, queuedBytes, shardCount, shardTime));
                 setChanged();
                 notifyObservers(new Report(time, freeMemory, totalMemory, threadCount, connectionCount, uniqueCount,
                                            roomCount, personalCount, privateCount, receivedCount, sentCount));
@@ -0,0 +1,154 @@
+/*
+ * Sweeper.java - a thread for removing the empty rooms from a list.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.chat.server;
+import  COM.volano.chat.Build;
+import  COM.volano.util.Message;
+import  java.util.concurrent.*;
+
+/**
+ * This class removes the empty rooms from a list of rooms.  Rather than
+ * checking every room in the list at each interval, its thread waits on a
+ * delay queue.  A room schedules its removal when its last user or guest
+ * leaves, and is removed once it has stayed empty for the interval.  Each
+ * room is removed while holding the lock on the room, so a thread which holds
+ * the lock on a room that is not marked as removed can be sure that the room
+ * stays in the list.
+ *
+ * <p>The list of rooms provides the method that removes a room from it.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Room#released()
+ */
+
+abstract class Sweeper implements Runnable {
+    public static final String COPYRIGHT = Build.COPYRIGHT;
+
+    private String     name;
+    private int        interval;
+    private Thread     sweeper;
+    private DelayQueue queue = new DelayQueue();  // Rooms waiting to be removed
+
+    /**
+     * The scheduled removal of an empty room.
+     */
+
+    private static final class Retirement implements Delayed {
+        private Room room;
+        private long emptyTime;           // Time the room was empty
+        private long dueTime;             // Time the room is to be removed
+
+        private Retirement(Room room, long emptyTime, long dueTime) {
+            this.room      = room;
+            this.emptyTime = emptyTime;
+            this.dueTime   = dueTime;
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        public int compareTo(Delayed delayed) {
+            long other = ((Retirement) delayed).dueTime;
+            return dueTime < other ? -1 : (dueTime > other ? 1 : 0);
+        }
+    }
+
+    /**
+     * Creates and starts a new room sweeper.
+     *
+     * @param name      the name of the room list and of its sweeper thread.
+     * @param priority  the priority of the sweeper thread.
+     * @param interval  the time a room must stay empty before the sweeper
+     *                  thread removes it from the list.
+     */
+
+    Sweeper(String name, int priority, int interval) {
+        this.name     = name;
+        this.interval = interval;
+        this.sweeper  = new Thread(this, name);
+        sweeper.setPriority(priority);
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    /**
+     * Removes a room from the list of rooms.  Called on the sweeper thread with
+     * the lock on the room held.
+     *
+     * @param key  the key to the room.
+     */
+
+    abstract void remove(Object key);
+
+    /**
+     * Schedules the removal of an empty room after the interval.
+     *
+     * @param room       the empty room.
+     * @param emptyTime  the time the room became empty.
+     * @return  the scheduled removal, which is passed back to the room when it
+     *          comes due.
+     */
+
+    Object schedule(Room room, long emptyTime) {
+        Retirement retirement = new Retirement(room, emptyTime, emptyTime + interval);
+        queue.add(retirement);
+        return retirement;
+    }
+
+    /**
+     * The body of the room list <i>sweeper</i> thread.  This method waits for
+     * the scheduled removal of each empty room and removes the room from the
+     * list if it is still empty.
+     */
+
+    public void run() {
+        Thread thisThread = Thread.currentThread();
+        try {
+            while (sweeper == thisThread) {
+                Retirement retirement = (Retirement) queue.take();
+                Room       room       = retirement.room;
+                synchronized (room) {
+                    if (room.retire(retirement, retirement.emptyTime)) {
+                        remove(room.key());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // Interrupted when stopped.
+        } catch (Throwable t) {
+            Log.printError(Message.format(Msg.UNEXPECTED, name), t);
+        } finally {
+            sweeper = null;
+            Log.printError(Message.format(Msg.STOPPING, name));
+        }
+    }
+
+    /**
+     * Stops the sweeper thread.
+     */
+
+    void stop() {
+        if (sweeper != null) {
+            Thread thread = sweeper;
+            sweeper = null;
+            thread.interrupt();
+        }
+    }
+}
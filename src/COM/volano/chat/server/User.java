@@ -38,6 +38,7 @@ class User {
     private boolean    member;
     private boolean    linked;
     private long       startTime = System.currentTimeMillis();
+    private volatile boolean presence;      // Receives presence indications
 
     /**
      * Creates a new user.
@@ -140,6 +141,29 @@ class User {
         return startTime;
     }
 
+    /**
+     * Sets whether the user's client receives the users entering and leaving the
+     * room in presence indications.
+     *
+     * @param presence  <code>true</code> for presence indications;
+     *                  <code>false</code> for enter and exit room indications.
+     */
+
+    void setPresence(boolean presence) {
+        this.presence = presence;
+    }
+
+    /**
+     * Checks whether the user's client receives presence indications.
+     *
+     * @return  <code>true</code> if the client receives presence indications;
+     *          otherwise <code>false</code>.
+     */
+
+    boolean getPresence() {
+        return presence;
+    }
+
     /**
      * Gets a string representation of this user object for debugging purposes.
      *
@@ -20,20 +20,33 @@ package COM.volano.chat.server;
 import  COM.volano.chat.Build;
 import  COM.volano.chat.packet.EnterRoom;
 import  java.util.*;
+import  java.util.concurrent.*;
 
 /**
  * This class maintains a list of users in a public or personal chat room.
+ * Users are indexed by connection identifier and by name, so that finding a
+ * user takes constant time no matter how many users are in the room.  Names
+ * are indexed in a case-folded form unless names must match case.  The list
+ * itself is kept as an array which is replaced, never modified, when a user
+ * enters or leaves, so that a broadcast can read it without locking or
+ * copying.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
  */
 
-class Usertable extends Vector {
+class Usertable {
     public static final String COPYRIGHT = Build.COPYRIGHT;
 
-    private int limit;                    // The maximum number of users allowed
+    private static final User[] EMPTY = new User[0];
+
+    private int     limit;                // The maximum number of users allowed
     private boolean matchcase;            // Match case on user names
 
+    private ConcurrentHashMap ids   = new ConcurrentHashMap();  // Users by connection identifier
+    private ConcurrentHashMap names = new ConcurrentHashMap();  // Users by name key
+    private volatile User[]   users = EMPTY;                    // Users in order of entry
+
     // Don't use the String.intern method since such strings are not garbage
     // collected until a fix for bugs 4035345 and 4072736 is available in
     // Java 1.2.
@@ -47,57 +60,70 @@ class Usertable extends Vector {
      */
 
     Usertable(int limit, boolean matchcase) {
-        super(limit);
         this.limit = limit;
         this.matchcase = matchcase;
     }
 
     /**
-     * Gets the index in the list of the user with the given name.
+     * Gets the key under which a user name is indexed.  When case is ignored,
+     * each character is folded the same way that
+     * <code>String.equalsIgnoreCase</code> compares them, so that two names
+     * have the same key exactly when they are equal ignoring case.
      *
-     * @param name  the name of the user whose index is requested.
-     * @return  the index of the user with the given name, or -1 if no such user
-     *          is found in the list.
+     * @param name  the user name.
+     * @return  the key for the name.
      */
 
-    private synchronized int indexOf(String name) {
-        for (int i = 0; i < elementCount; i++) {
-            String string = ((User) elementData[i]).getName();
-            if (matchcase ? name.equals(string) : name.equalsIgnoreCase(string)) {
-                return i;
-            }
+    private String keyOf(String name) {
+        if (matchcase) {
+            return name;
+        }
+        int length = name.length();
+        int index  = 0;
+        while (index < length && fold(name.charAt(index)) == name.charAt(index)) {
+            index++;
+        }
+        if (index == length) {
+            return name;                    // Already folded
+        }
+        char[] chars = name.toCharArray();
+        for (int i = index; i < length; i++) {
+            chars[i] = fold(chars[i]);
         }
-        return -1;
+        return new String(chars);
     }
 
     /**
-     * Gets the index in the list of the user with the given connection
-     * identifier.
+     * Folds the case of a character.
      *
-     * @param id  the connection identifier of the user whose index is requested.
-     * @return  the index of the user with the given connection identifier, or -1
-     *          if no such user is found in the list.
+     * @param c  the character to fold.
+     * @return  the folded character.
      */
 
-    private synchronized int indexOf(int id) {
-        for (int i = 0; i < elementCount; i++) {
-            if (id == ((User) elementData[i]).getId()) {
-                return i;
-            }
-        }
-        return -1;
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
     }
 
     /**
-     * Gets a snapshot of all users in the list.
+     * Gets the number of users in the list.
+     *
+     * @return  the number of users.
+     */
+
+    int size() {
+        return users.length;
+    }
+
+    /**
+     * Gets a snapshot of all users in the list.  The array is shared by all
+     * callers until the next user enters or leaves, so it must not be
+     * modified.
      *
      * @return  an array of all users in the list.
      */
 
-    synchronized User[] snapshot() {
-        User[] list = new User[elementCount];
-        System.arraycopy(elementData, 0, list, 0, elementCount);
-        return list;
+    User[] snapshot() {
+        return users;
     }
 
     /**
@@ -109,7 +135,7 @@ class Usertable extends Vector {
      */
 
     boolean contains(String name) {
-        return indexOf(name) >= 0;
+        return names.containsKey(keyOf(name));
     }
 
     /**
@@ -122,7 +148,7 @@ class Usertable extends Vector {
      */
 
     boolean contains(int id) {
-        return indexOf(id) >= 0;
+        return ids.containsKey(new Integer(id));
     }
 
     /**
@@ -133,12 +159,8 @@ class Usertable extends Vector {
      *          user is found.
      */
 
-    synchronized User getUser(String name) {
-        int index = indexOf(name);
-        if (index >= 0) {
-            return (User) elementAt(index);
-        }
-        return null;
+    User getUser(String name) {
+        return (User) names.get(keyOf(name));
     }
 
     /**
@@ -149,12 +171,8 @@ class Usertable extends Vector {
      *          <code>null</code> if no such user is found.
      */
 
-    synchronized User getUser(int id) {
-        int index = indexOf(id);
-        if (index >= 0) {
-            return (User) elementAt(index);
-        }
-        return null;
+    User getUser(int id) {
+        return (User) ids.get(new Integer(id));
     }
 
     /**
@@ -190,12 +208,16 @@ class Usertable extends Vector {
 
     synchronized int putUser(User user, boolean unconditional) {
         int result = EnterRoom.OKAY;
-        if (elementCount >= limit && ! unconditional) {
+        if (users.length >= limit && ! unconditional) {
             result = EnterRoom.ROOM_FULL;
-        } else if (contains(user.getName())) {
+        } else if (names.putIfAbsent(keyOf(user.getName()), user) != null) {
             result = EnterRoom.NAME_TAKEN;
         } else {
-            addElement(user);
+            ids.put(new Integer(user.getId()), user);
+            User[] list = new User[users.length + 1];
+            System.arraycopy(users, 0, list, 0, users.length);
+            list[users.length] = user;
+            users = list;
         }
         return result;
     }
@@ -209,11 +231,9 @@ class Usertable extends Vector {
      */
 
     synchronized User removeUser(String name) {
-        User user  = null;
-        int  index = indexOf(name);
-        if (index >= 0) {
-            user = (User) elementAt(index);
-            removeElementAt(index);
+        User user = getUser(name);
+        if (user != null) {
+            remove(user);
         }
         return user;
     }
@@ -227,12 +247,43 @@ class Usertable extends Vector {
      */
 
     synchronized User removeUser(int id) {
-        User user  = null;
-        int  index = indexOf(id);
-        if (index >= 0) {
-            user = (User) elementAt(index);
-            removeElementAt(index);
+        User user = getUser(id);
+        if (user != null) {
+            remove(user);
         }
         return user;
     }
+
+    /**
+     * Removes a user from the indexes and from the list.  Called with the lock
+     * held.
+     *
+     * @param user  the user to remove.
+     */
+
+    private void remove(User user) {
+        names.remove(keyOf(user.getName()), user);
+        ids.remove(new Integer(user.getId()), user);
+        User[] list  = users;
+        int    index = 0;
+        while (index < list.length && list[index] != user) {
+            index++;
+        }
+        if (index < list.length) {
+            User[] copy = list.length == 1 ? EMPTY : new User[list.length - 1];
+            System.arraycopy(list, 0, copy, 0, index);
+            System.arraycopy(list, index + 1, copy, index, list.length - index - 1);
+            users = copy;
+        }
+    }
+
+    /**
+     * Returns a string representation of the users in the list.
+     *
+     * @return  the users in the list, in order of entry.
+     */
+
+    public String toString() {
+        return Arrays.asList(users).toString();
+    }
 }
@@ -21,6 +21,7 @@ import  COM.volano.chat.Build;
 import  COM.volano.io.UnicodeReader;
 import  COM.volano.net.Connection;
 import  COM.volano.net.DNSBlacklist;
+import  COM.volano.net.SendQueue;
 import  COM.volano.util.Message;
 import  COM.volano.chat.packet.*;
 import  java.io.*;
@@ -113,12 +114,23 @@ public class Value {
     boolean          serverVerbose;
     boolean          serverTrace;
     boolean          serverNothreadgroups;
+    boolean          serverNio;
+    boolean          serverVirtualthreads;
+    int              serverBatchSize;
+    int              serverBatchLatency;
+    int              serverQueueLimit;
+    int              serverQueueBytes;
+    String           serverQueueOverflow;
+    int              serverFanoutSize;
+    int              serverFanoutShard;
     boolean          addressBroadcast;
     int              scriptTimeout;
     boolean          scriptTrace;
     int              roomLimit;
     boolean          roomNodynamic;
     int              roomSweepInterval;
+    boolean          roomMailbox;
+    int              roomPresenceDelay;
     boolean          usernameMatchcase;
     int              lengthChattext;
     int              lengthProfile;
@@ -147,10 +159,14 @@ public class Value {
     // Banning control.
     String           dnslistDenied;
     String           dnslistDynamic;
+    int              dnslistTimeout;
+    int              dnslistCacheFound;
+    int              dnslistCacheMissing;
     int              banStaticDuration;
     int              banDynamicDuration;
     int              banNetblockDuration;
     String           banNetblockIpv4mask;
+    File             banJournal;
 
     // Configuration files.
     File             serverKey;
@@ -1165,12 +1181,23 @@ public class Value {
         serverVerbose        = Boolean.valueOf(properties.getProperty(Key.SERVER_VERBOSE,        Default.SERVER_VERBOSE)).booleanValue();
         serverTrace          = Boolean.valueOf(properties.getProperty(Key.SERVER_TRACE,          Default.SERVER_TRACE)).booleanValue();
         serverNothreadgroups = Boolean.valueOf(properties.getProperty(Key.SERVER_NOTHREADGROUPS, Default.SERVER_NOTHREADGROUPS)).booleanValue();
+        serverNio            = Boolean.valueOf(properties.getProperty(Key.SERVER_NIO,            Default.SERVER_NIO)).booleanValue();
+        serverVirtualthreads = Boolean.valueOf(properties.getProperty(Key.SERVER_VIRTUALTHREADS, Default.SERVER_VIRTUALTHREADS)).booleanValue();
+        serverBatchSize      = Integer.parseInt(properties.getProperty(Key.SERVER_BATCH_SIZE,    Default.SERVER_BATCH_SIZE));
+        serverBatchLatency   = Integer.parseInt(properties.getProperty(Key.SERVER_BATCH_LATENCY, Default.SERVER_BATCH_LATENCY));
+        serverQueueLimit     = Integer.parseInt(properties.getProperty(Key.SERVER_QUEUE_LIMIT,   Default.SERVER_QUEUE_LIMIT));
+        serverQueueBytes     = Integer.parseInt(properties.getProperty(Key.SERVER_QUEUE_BYTES,   Default.SERVER_QUEUE_BYTES));
+        serverQueueOverflow  = properties.getProperty(Key.SERVER_QUEUE_OVERFLOW, Default.SERVER_QUEUE_OVERFLOW).trim().toLowerCase();
+        serverFanoutSize     = Integer.parseInt(properties.getProperty(Key.SERVER_FANOUT_SIZE,   Default.SERVER_FANOUT_SIZE));
+        serverFanoutShard    = Integer.parseInt(properties.getProperty(Key.SERVER_FANOUT_SHARD,  Default.SERVER_FANOUT_SHARD));
         addressBroadcast     = Boolean.valueOf(properties.getProperty(Key.ADDRESS_BROADCAST,     Default.ADDRESS_BROADCAST)).booleanValue();
         scriptTimeout        = Integer.parseInt(properties.getProperty(Key.SCRIPT_TIMEOUT,       Default.SCRIPT_TIMEOUT));
         scriptTrace          = Boolean.valueOf(properties.getProperty(Key.SCRIPT_TRACE,          Default.SCRIPT_TRACE)).booleanValue();
         roomLimit            = Integer.parseInt(properties.getProperty(Key.ROOM_LIMIT,           Default.ROOM_LIMIT));
         roomNodynamic        = Boolean.valueOf(properties.getProperty(Key.ROOM_NODYNAMIC,        Default.ROOM_NODYNAMIC)).booleanValue();
         roomSweepInterval    = Integer.parseInt(properties.getProperty(Key.ROOM_SWEEP_INTERVAL,  Default.ROOM_SWEEP_INTERVAL));
+        roomMailbox          = Boolean.valueOf(properties.getProperty(Key.ROOM_MAILBOX,          Default.ROOM_MAILBOX)).booleanValue();
+        roomPresenceDelay    = Integer.parseInt(properties.getProperty(Key.ROOM_PRESENCE_DELAY,  Default.ROOM_PRESENCE_DELAY));
         usernameMatchcase    = Boolean.valueOf(properties.getProperty(Key.USERNAME_MATCHCASE,    Default.USERNAME_MATCHCASE)).booleanValue();
         lengthChattext       = Integer.parseInt(properties.getProperty(Key.LENGTH_CHATTEXT,      Default.LENGTH_CHATTEXT));
         lengthProfile        = Integer.parseInt(properties.getProperty(Key.LENGTH_PROFILE,       Default.LENGTH_PROFILE));
@@ -1196,10 +1223,14 @@ public class Value {
 
         dnslistDenied       = properties.getProperty(Key.DNSLIST_DENIED,  Default.DNSLIST_DENIED);
         dnslistDynamic      = properties.getProperty(Key.DNSLIST_DYNAMIC, Default.DNSLIST_DYNAMIC);
+        dnslistTimeout      = Integer.parseInt(properties.getProperty(Key.DNSLIST_TIMEOUT,       Default.DNSLIST_TIMEOUT));
+        dnslistCacheFound   = Integer.parseInt(properties.getProperty(Key.DNSLIST_CACHE_FOUND,   Default.DNSLIST_CACHE_FOUND));
+        dnslistCacheMissing = Integer.parseInt(properties.getProperty(Key.DNSLIST_CACHE_MISSING, Default.DNSLIST_CACHE_MISSING));
         banStaticDuration   = Integer.parseInt(properties.getProperty(Key.BAN_STATIC_DURATION,   Default.BAN_STATIC_DURATION));
         banDynamicDuration  = Integer.parseInt(properties.getProperty(Key.BAN_DYNAMIC_DURATION,  Default.BAN_DYNAMIC_DURATION));
         banNetblockDuration = Integer.parseInt(properties.getProperty(Key.BAN_NETBLOCK_DURATION, Default.BAN_NETBLOCK_DURATION));
         banNetblockIpv4mask = properties.getProperty(Key.BAN_NETBLOCK_IPV4MASK, Default.BAN_NETBLOCK_IPV4MASK);
+        String valueBanJournal = properties.getProperty(Key.BAN_JOURNAL, Default.BAN_JOURNAL);
 
         String valueServerKey   = properties.getProperty(Key.SERVER_KEY,             Default.SERVER_KEY);
         String valueServerRooms = properties.getProperty(Key.SERVER_ROOMS,           Default.SERVER_ROOMS);
@@ -1288,6 +1319,7 @@ public class Value {
         logChatPublicDir = getFile(installRoot, baseDirectory, valueLogChatPublicDir);
         logChatPrivate   = getFile(installRoot, baseDirectory, valueLogChatPrivate);
         memberMonitors   = getFile(installRoot, baseDirectory, valueMemberMonitors);
+        banJournal       = getFile(installRoot, baseDirectory, valueBanJournal);
 
         // Ensure that log files and format strings are defined for transcriptions.
         if (logChatPublicDir == null || formatChatPublic.toPattern().length() == 0) {
@@ -1386,6 +1418,33 @@ public class Value {
             Connection.useThreadGroups = false;
         }
 
+        // Service connections with selector event loops instead of threads.
+        if (serverNio) {
+            System.out.println(Msg.NIO);
+            Connection.useSelectors = true;
+        }
+
+        // Run the connection threads as virtual threads if available.
+        if (serverVirtualthreads) {
+            if (Connection.useVirtualThreads()) {
+                System.out.println(Msg.VIRTUAL_THREADS);
+            } else {
+                System.out.println(Msg.NO_VIRTUAL_THREADS);
+            }
+        }
+
+        // Set how the send threads batch their socket writes.
+        SendQueue.setBatchSize(serverBatchSize);
+        SendQueue.setBatchLatency(serverBatchLatency);
+        SendQueue.setLimits(serverQueueLimit, serverQueueBytes);
+        SendQueue.setOverflowPolicy(serverQueueOverflow.indexOf("coalesce") >= 0, serverQueueOverflow.indexOf("drop") >= 0);
+
+        // Set when broadcasts to very large rooms are sent in parallel.
+        FanOut.setLimits(serverFanoutSize, serverFanoutShard);
+
+        // Let each room handle its packets in turn on a shared scheduler.
+        Mailbox.setEnabled(roomMailbox);
+
         if (Build.IS_BENCHMARK) {       // If this is the VolanoMark benchmark
             clientAuthentication = false; // No client authentication
             serverTimeout = 0;            // No dead session detection and timeouts
@@ -1399,6 +1458,8 @@ public class Value {
         if (! Build.IS_BENCHMARK) { // No DNS lookups for VolanoMark
             DNSBlacklist.parseList(DNSBlacklist.getDenied(),  dnslistDenied);
             DNSBlacklist.parseList(DNSBlacklist.getDynamic(), dnslistDynamic);
+            DNSBlacklist.setTimeout(dnslistTimeout);
+            DNSBlacklist.setCacheTimes(dnslistCacheFound, dnslistCacheMissing);
         }
 
         // Set up banned host table.
@@ -1407,6 +1468,13 @@ public class Value {
         Bantable.setNetblockDuration(banNetblockDuration);
         Bantable.setNetblockIpv4mask(banNetblockIpv4mask);
         Bantable table = new Bantable(formatDate, formatBanned);
+        if (banJournal != null) {
+            try {
+                table.setJournal(new BanJournal(banJournal));
+            } catch (IOException e) {
+                Log.printError(Message.format(Msg.BAD_BAN_JOURNAL, banJournal.getPath()), e);
+            }
+        }
         AccessControl.setHostsBanned(table);
 
         // Load access control files.
@@ -0,0 +1,383 @@
+/*
+ * AddressTrie.java - a longest prefix match table of network address blocks.
+ * Copyright (C) 1996-2002 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+
+/**
+ * This class maps blocks of IPv4 and IPv6 addresses, given as an address and
+ * the number of leading bits in its network prefix, to a set of flags.  Looking
+ * up an address returns the flags of the longest prefix containing it.  The
+ * table is a binary radix trie with the runs of bits that have no branches
+ * compressed into single nodes, so a lookup visits one node for each block
+ * along the way rather than one for each bit of the address.
+ *
+ * <p>A table is not safe for adding blocks with <code>put</code> while other
+ * threads look up addresses.  Instead, a new table is built with all of the
+ * blocks and then replaces the old one.  A single block can also be added or
+ * removed with <code>withBlock</code> and <code>withoutBlock</code>, which
+ * leave the table unchanged and return a new one sharing all of its nodes
+ * except those on the path to the block.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ */
+
+public class AddressTrie {
+    private static final int IPV4_LENGTH = 4;     // Bytes in an IPv4 address
+    private static final int IPV6_LENGTH = 16;    // Bytes in an IPv6 address
+
+    private Node root4 = new Node(new byte[IPV4_LENGTH], 0, 0);
+    private Node root6 = new Node(new byte[IPV6_LENGTH], 0, 0);
+    private int  count;                           // Number of blocks in the table
+
+    /**
+     * A network prefix in the trie.
+     */
+
+    private static final class Node {
+        private byte[] key;       // Address with the bits past the prefix cleared
+        private int    length;    // Number of bits in the prefix
+        private int    flags;     // Flags of the block, or 0 if only a branch
+        private Node   zero;      // Longer prefixes whose next bit is 0
+        private Node   one;       // Longer prefixes whose next bit is 1
+
+        private Node(byte[] key, int length, int flags) {
+            this.key    = key;
+            this.length = length;
+            this.flags  = flags;
+        }
+
+        private Node copy() {
+            Node node = new Node(key, length, flags);
+            node.zero = zero;
+            node.one  = one;
+            return node;
+        }
+
+        private Node child(int branch) {
+            return branch == 0 ? zero : one;
+        }
+
+        private void setChild(int branch, Node child) {
+            if (branch == 0) {
+                zero = child;
+            } else {
+                one = child;
+            }
+        }
+    }
+
+    /**
+     * Creates an empty table.
+     */
+
+    public AddressTrie() {
+    }
+
+    /**
+     * Creates a table sharing the nodes of another table.
+     *
+     * @param trie  the table to share.
+     */
+
+    private AddressTrie(AddressTrie trie) {
+        root4 = trie.root4;
+        root6 = trie.root6;
+        count = trie.count;
+    }
+
+    /**
+     * Gets a bit of an address.
+     *
+     * @param address  the address in network byte order.
+     * @param index    the index of the bit, where 0 is the highest order bit.
+     * @return  the bit, either 0 or 1.
+     */
+
+    private static int bit(byte[] address, int index) {
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+
+    /**
+     * Gets the number of leading bits that two addresses have in common.
+     *
+     * @param a    the first address.
+     * @param b    the second address, of the same length.
+     * @param max  the most bits to compare.
+     * @return  the number of leading bits in common, up to <code>max</code>.
+     */
+
+    private static int common(byte[] a, byte[] b, int max) {
+        for (int i = 0; i * 8 < max; i++) {
+            int diff = (a[i] ^ b[i]) & 0xff;
+            if (diff != 0) {
+                return Math.min(i * 8 + Integer.numberOfLeadingZeros(diff) - 24, max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Copies an address, clearing the bits after its network prefix.
+     *
+     * @param address  the address in network byte order.
+     * @param length   the number of bits in the prefix.
+     * @return  the network address of the block.
+     */
+
+    private static byte[] mask(byte[] address, int length) {
+        byte[] key = new byte[address.length];
+        for (int i = 0; i * 8 < length; i++) {
+            int bits = Math.min(length - i * 8, 8);
+            key[i] = (byte) (address[i] & (0xff00 >>> bits));
+        }
+        return key;
+    }
+
+    /**
+     * Gets the root of the trie for addresses of the given form.
+     *
+     * @param address  the IPv4 or IPv6 address in network byte order.
+     * @return  the root node, or <code>null</code> if the address is neither
+     *          4 nor 16 bytes long.
+     */
+
+    private Node rootOf(byte[] address) {
+        switch (address.length) {
+        case IPV4_LENGTH:
+            return root4;
+        case IPV6_LENGTH:
+            return root6;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * Checks that a block of addresses is valid.
+     *
+     * @param address  the IPv4 or IPv6 address in the block.
+     * @param length   the number of bits in the network prefix of the block.
+     * @param flags    the flags of the block.
+     * @exception java.lang.IllegalArgumentException  if the address or prefix
+     *            length is not valid, or the flags are zero.
+     */
+
+    private void check(byte[] address, int length, int flags) {
+        if (rootOf(address) == null || length < 0 || length > address.length * 8 || flags == 0) {
+            throw new IllegalArgumentException();
+        }
+    }
+
+    /**
+     * Adds a block of addresses to the table.  Adding the same block again
+     * combines the flags with those already set for it.
+     *
+     * @param address  an IPv4 or IPv6 address in the block, in network byte
+     *                 order.
+     * @param length   the number of leading bits in the network prefix of the
+     *                 block, from 0 for all addresses to 32 or 128 for a
+     *                 single address.
+     * @param flags    the flags of the block, which must not be zero.
+     * @exception java.lang.IllegalArgumentException  if the address or prefix
+     *            length is not valid.
+     */
+
+    public void put(byte[] address, int length, int flags) {
+        check(address, length, flags);
+        insert(rootOf(address), mask(address, length), length, flags, false);
+    }
+
+    /**
+     * Gets a new table with a block of addresses added, leaving this table
+     * unchanged.  Only the nodes on the path to the block are copied.
+     *
+     * @param address  an IPv4 or IPv6 address in the block, in network byte
+     *                 order.
+     * @param length   the number of leading bits in the network prefix of the
+     *                 block.
+     * @param flags    the flags to set for the block, which must not be zero.
+     * @return  the new table.
+     * @exception java.lang.IllegalArgumentException  if the address or prefix
+     *            length is not valid.
+     */
+
+    public AddressTrie withBlock(byte[] address, int length, int flags) {
+        check(address, length, flags);
+        AddressTrie trie = new AddressTrie(this);
+        Node        root = rootOf(address).copy();
+        trie.setRoot(root);
+        trie.insert(root, mask(address, length), length, flags, true);
+        return trie;
+    }
+
+    /**
+     * Gets a new table with flags cleared from a block of addresses, leaving
+     * this table unchanged.  The block is removed when it has no flags left,
+     * along with any branch it no longer needs.  Only the nodes on the path to
+     * the block are copied.
+     *
+     * @param address  an IPv4 or IPv6 address in the block, in network byte
+     *                 order.
+     * @param length   the number of leading bits in the network prefix of the
+     *                 block.
+     * @param flags    the flags to clear from the block, which must not be
+     *                 zero.
+     * @return  the new table, or this table if it has no such block.
+     * @exception java.lang.IllegalArgumentException  if the address or prefix
+     *            length is not valid.
+     */
+
+    public AddressTrie withoutBlock(byte[] address, int length, int flags) {
+        check(address, length, flags);
+        byte[] key   = mask(address, length);
+        Node[] path  = new Node[address.length * 8 + 1];   // Nodes from the root to the block
+        int    depth = 0;
+        Node   node  = rootOf(address);
+        path[depth++] = node;
+        while (node.length < length) {
+            node = node.child(bit(key, node.length));
+            if (node == null || node.length > length || common(node.key, key, node.length) < node.length) {
+                return this;
+            }
+            path[depth++] = node;
+        }
+        if (node.length != length || (node.flags & flags) == 0) {
+            return this;
+        }
+
+        // Copies the path, linking each copy to its parent.
+        AddressTrie trie = new AddressTrie(this);
+        for (int i = 0; i < depth; i++) {
+            path[i] = path[i].copy();
+            if (i > 0) {
+                path[i - 1].setChild(bit(key, path[i - 1].length), path[i]);
+            }
+        }
+        trie.setRoot(path[0]);
+        node = path[depth - 1];
+        node.flags &= ~flags;
+        if (node.flags == 0) {
+            trie.count--;
+            // Removes nodes left with no flags and fewer than two branches.
+            for (int i = depth - 1; i > 0 && path[i].flags == 0; i--) {
+                Node parent = path[i - 1];
+                Node child  = path[i];
+                int  branch = bit(key, parent.length);
+                if (child.zero != null && child.one != null) {
+                    break;
+                }
+                parent.setChild(branch, child.zero != null ? child.zero : child.one);
+            }
+        }
+        return trie;
+    }
+
+    /**
+     * Replaces the root of the trie for addresses of the same form.
+     *
+     * @param root  the new root node.
+     */
+
+    private void setRoot(Node root) {
+        if (root.key.length == IPV4_LENGTH) {
+            root4 = root;
+        } else {
+            root6 = root;
+        }
+    }
+
+    /**
+     * Adds a block to the trie below a node.
+     *
+     * @param node    the root node.
+     * @param key     the network address of the block.
+     * @param length  the number of bits in the network prefix of the block.
+     * @param flags   the flags of the block.
+     * @param copy    <code>true</code> to copy each node changed below the
+     *                root rather than changing it; otherwise <code>false</code>.
+     */
+
+    private void insert(Node node, byte[] key, int length, int flags, boolean copy) {
+        while (node.length < length) {
+            int  branch = bit(key, node.length);
+            Node child  = node.child(branch);
+            Node insert = null;
+            if (child == null) {
+                insert = new Node(key, length, flags);
+            } else {
+                int shared = common(child.key, key, Math.min(child.length, length));
+                if (shared == child.length) {
+                    if (copy) {
+                        child = child.copy();
+                        node.setChild(branch, child);
+                    }
+                    node = child;
+                    continue;
+                }
+                // Splits the compressed run of bits where the new block branches off.
+                insert = new Node(mask(key, shared), shared, shared == length ? flags : 0);
+                insert.setChild(bit(child.key, shared), child);
+                if (shared < length) {
+                    insert.setChild(bit(key, shared), new Node(key, length, flags));
+                }
+            }
+            node.setChild(branch, insert);
+            count++;
+            return;
+        }
+        if (node.flags == 0) {
+            count++;
+        }
+        node.flags |= flags;
+    }
+
+    /**
+     * Gets the flags of the longest block in the table containing an address.
+     *
+     * @param address  the IPv4 or IPv6 address in network byte order.
+     * @return  the flags of the block with the longest network prefix containing
+     *          the address, or 0 if no block contains it.
+     */
+
+    public int get(byte[] address) {
+        Node node  = rootOf(address);
+        int  flags = 0;
+        int  bits  = address.length * 8;
+        while (node != null && common(node.key, address, node.length) == node.length) {
+            if (node.flags != 0) {
+                flags = node.flags;
+            }
+            if (node.length == bits) {
+                break;
+            }
+            node = bit(address, node.length) == 0 ? node.zero : node.one;
+        }
+        return flags;
+    }
+
+    /**
+     * Gets the number of blocks in the table.
+     *
+     * @return  the number of blocks.
+     */
+
+    public int size() {
+        return count;
+    }
+}
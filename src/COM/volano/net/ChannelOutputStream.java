@@ -0,0 +1,153 @@
+/*
+ * ChannelOutputStream.java - a byte array buffer drained to a socket channel.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+import  java.io.*;
+import  java.nio.*;
+import  java.nio.channels.*;
+
+/**
+ * This class buffers the bytes of the streamable objects sent on a
+ * non-blocking connection until its event loop can write them to the socket
+ * channel.  Objects are serialized into this buffer by the sending threads,
+ * and the buffer is drained by the event loop thread when the channel is
+ * writable.  Bytes written to the channel are skipped by moving an offset
+ * rather than by copying the rest of the buffer down, which is done only when
+ * the buffer would otherwise have to grow.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     EventLoop
+ */
+
+class ChannelOutputStream extends ByteArrayOutputStream {
+    private static final int INITIAL_SIZE = 512;
+
+    private int offset;     // Index of the first byte not yet written
+
+    /**
+     * Creates a new channel output stream.
+     */
+
+    ChannelOutputStream() {
+        super(INITIAL_SIZE);
+    }
+
+    /**
+     * Checks whether this buffer has no bytes waiting to be written.
+     *
+     * @return <code>true</code> if the buffer is empty; otherwise
+     *         <code>false</code>.
+     */
+
+    synchronized boolean isEmpty() {
+        return count == offset;
+    }
+
+    /**
+     * Gets the number of bytes waiting to be written.
+     *
+     * @return the number of bytes in the buffer.
+     */
+
+    public synchronized int size() {
+        return count - offset;
+    }
+
+    /**
+     * Discards all bytes in the buffer.
+     */
+
+    public synchronized void reset() {
+        count  = 0;
+        offset = 0;
+    }
+
+    /**
+     * Writes the specified byte to this buffer.
+     *
+     * @param b  the byte to be written.
+     */
+
+    public synchronized void write(int b) {
+        compact(1);
+        super.write(b);
+    }
+
+    /**
+     * Writes the specified bytes to this buffer.
+     *
+     * @param b    the data.
+     * @param off  the start offset in the data.
+     * @param len  the number of bytes to write.
+     */
+
+    public synchronized void write(byte[] b, int off, int len) {
+        compact(len);
+        super.write(b, off, len);
+    }
+
+    /**
+     * Discards any bytes beyond the specified length, for removing a partially
+     * serialized object from the end of the buffer.
+     *
+     * @param length  the number of bytes to keep, as given by {@link #size()}.
+     */
+
+    synchronized void truncate(int length) {
+        if (offset + length < count) {
+            count = offset + length;
+        }
+    }
+
+    /**
+     * Writes as many buffered bytes as the channel accepts without blocking and
+     * removes them from the buffer.
+     *
+     * @param channel  the non-blocking socket channel.
+     * @return <code>true</code> if all buffered bytes were written; otherwise
+     *         <code>false</code>.
+     * @exception java.io.IOException  if an I/O error occurs.
+     */
+
+    synchronized boolean writeTo(SocketChannel channel) throws IOException {
+        if (count > offset) {
+            offset += channel.write(ByteBuffer.wrap(buf, offset, count - offset));
+            if (offset == count) {
+                count  = 0;
+                offset = 0;
+            }
+        }
+        return count == 0;
+    }
+
+    /**
+     * Moves the bytes not yet written to the start of the buffer if the bytes
+     * to be added would not otherwise fit.
+     *
+     * @param length  the number of bytes to be added.
+     */
+
+    private void compact(int length) {
+        if (offset > 0 && count + length > buf.length) {
+            count -= offset;
+            System.arraycopy(buf, offset, buf, 0, count);
+            offset = 0;
+        }
+    }
+}
@@ -19,7 +19,11 @@
 package COM.volano.net;
 import  java.io.*;
 import  java.net.*;
+import  java.nio.*;
+import  java.nio.channels.*;
 import  java.util.*;
+import  java.util.concurrent.*;
+import  java.util.concurrent.atomic.*;
 
 /**
  * This class manages a socket connection that can be used to send and receive
@@ -89,6 +93,12 @@ import  java.util.*;
  *   }
  * }
  * </pre>
+ * When <code>useSelectors</code> is set and the socket was accepted through a
+ * <code>ServerSocketChannel</code>, the connection runs in non-blocking mode.
+ * Instead of its own send and receive threads, the connection is serviced by
+ * one of a small pool of event loop threads, which reads and dispatches its
+ * packets to the same observers and writes its queued objects when the socket
+ * channel is writable.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
@@ -123,35 +133,38 @@ public class Connection extends Observable implements Runnable {
 
     private static final String RECEIVE_NAME    = "Receiver-";
     private static final String SEND_NAME       = "Sender-";
+    private static final String WORK_NAME       = "Worker-";
     private static final int    ATTRIBUTE_SIZE  =   11;
     private static final int    JOIN_TIMEOUT    = 3000;   // 3 seconds
+    private static final int    INPUT_SIZE      =  512;   // Initial non-blocking input buffer
+    private static final int    INPUT_LIMIT     = 256 * 1024;  // Largest non-blocking input packet
 
     // When set to false, we do not place the send threads into a thread group so
     // as to avoid Apple Mac Runtime for Java bug 2232076.  Using thread groups on
     // the Mac can result in intermittent java.lang.IllegalThreadStateExceptions.
     public static boolean useThreadGroups = true; // Group the send threads
+    public static boolean useSelectors;           // Non-blocking mode for server channels
     public static boolean verbose;                // Verbose error messages
 
+    private static ThreadFactory virtualThreads;  // Non-null to use virtual threads
     private static PacketFactory factory      = new PacketFactory();
     private static ThreadGroup   sendGroup    = new ThreadGroup("Senders");
     private static ThreadGroup   receiveGroup = new ThreadGroup("Receivers");
-    private static Hashtable     connections  = new Hashtable();
+    private static ThreadGroup   workGroup    = new ThreadGroup("Workers");
+
+    private static ConcurrentHashMap connections = new ConcurrentHashMap();  // Lists of connections by host
+    private static AtomicInteger     idCounter   = new AtomicInteger();      // Connection id counter
+    private static AtomicInteger     count       = new AtomicInteger();      // Number of active connections
 
     // Use static object locks instead of "static synchronized" methods to avoid
     // Java bugs 4056233 and 4041699 (fixed in Java 1.2).
 
-    private static Object  idCounterLock = new Object();  // Synchronization lock
-    private static int     idCounter;                     // Connection id counter
-    private static Object  countLock = new Object();      // Synchronization lock
-    private static int     count;                         // Number of active connections
     private static Object  turnstile = new Object();      // Used for turnstile synchronization
     private static int     turnstileCount;                // Count of connections through turnstile
 
-    private static boolean counting;                      // Counting packets sent and received
-    private static Object  sentLock = new Object();       // Synchronization lock
-    private static long    sent;                          // Number of packets sent
-    private static Object  receivedLock = new Object();   // Synchronization lock
-    private static long    received;                      // Number of packets received
+    private static boolean   counting;                    // Counting packets sent and received
+    private static LongAdder sent     = new LongAdder();  // Number of packets sent
+    private static LongAdder received = new LongAdder();  // Number of packets received
 
     private Socket                socket;
     private boolean               useTurnstile;
@@ -167,10 +180,28 @@ public class Connection extends Observable implements Runnable {
     private long      endTime;
     private Thread    receiver;
     private Thread    sender;
-    private int       timeouts;
+    private volatile int timeouts;
     private int       status     = HTTP_OK;       // Reason connection was closed
     private String    kicker     = "";            // Host name of closing client
     private Hashtable attributes = new Hashtable(ATTRIBUTE_SIZE);
+    private Observer  handler;                // Receives objects in place of observers
+
+    // Non-blocking mode.
+    private SocketChannel       channel;        // Non-null in non-blocking mode
+    private EventLoop           loop;           // Event loop servicing the channel
+    private SelectionKey        key;            // Registration with the event loop
+    private ChannelOutputStream buffer;         // Bytes waiting to be written
+    private byte[]              inBuffer;       // Bytes received but not yet read
+    private int                 inCount;        // Number of bytes in input buffer
+    private boolean             terminated;     // Observers notified of close
+    private boolean             busy;           // Reading stopped for a blocking task
+
+    // Read timeouts.
+    private int                 soTimeout;      // Read timeout in milliseconds
+    private volatile long       lastRead;       // Time of last read
+    long                        deadline;       // Time due on the timing wheel
+    Connection                  timerNext;      // Next connection in timing wheel slot
+    private long                resumeTime;     // End of current read pause
 
     /**
      * Returns the next integer identifier for this connection.  This identifier
@@ -180,14 +211,13 @@ public class Connection extends Observable implements Runnable {
      */
 
     private static int nextId() {
-        synchronized (idCounterLock) {
-            return ++idCounter;               // Return value after increment
-        }
+        return idCounter.incrementAndGet();   // Return value after increment
     }
 
     /**
      * Adds a connection to the list of all connections, increments the connection
-     * counter and returns its incremented value.
+     * counter and returns its incremented value.  Only the list of connections
+     * with the same host address is locked, and only while it is changed.
      *
      * @param connection  the connection to add.
      * @return the number of connections, including this one.
@@ -195,15 +225,24 @@ public class Connection extends Observable implements Runnable {
 
     private static int add(Connection connection) {
         String host = connection.getHostAddress();
-        synchronized (countLock) {
+        while (true) {
             Vector list = (Vector) connections.get(host);
             if (list == null) {
                 list = new Vector(1);
+                list.addElement(connection);
+                if (connections.putIfAbsent(host, list) == null) {
+                    break;
+                }
+            } else {
+                synchronized (list) {
+                    if (connections.get(host) == list) {    // Not emptied and removed
+                        list.addElement(connection);
+                        break;
+                    }
+                }
             }
-            list.addElement(connection);
-            connections.put(host, list);
-            return ++count;                   // Return value after increment
         }
+        return count.incrementAndGet();       // Return value after increment
     }
 
     /**
@@ -216,16 +255,16 @@ public class Connection extends Observable implements Runnable {
 
     private static int remove(Connection connection) {
         String host = connection.getHostAddress();
-        synchronized (countLock) {
-            Vector list = (Vector) connections.get(host);
-            if (list != null) {
+        Vector list = (Vector) connections.get(host);
+        if (list != null) {
+            synchronized (list) {
                 list.removeElement(connection);
                 if (list.isEmpty()) {
-                    connections.remove(host);
+                    connections.remove(host, list);
                 }
             }
-            return --count;                   // Return value after decrement
         }
+        return count.decrementAndGet();       // Return value after decrement
     }
 
     /**
@@ -237,9 +276,9 @@ public class Connection extends Observable implements Runnable {
 
     public static Connection[] get(String host) {
         Connection[] array = new Connection[0];
-        synchronized (countLock) {
-            Vector list = (Vector) connections.get(host);
-            if (list != null) {
+        Vector list = (Vector) connections.get(host);
+        if (list != null) {
+            synchronized (list) {
                 array = new Connection[list.size()];
                 list.copyInto(array);
             }
@@ -247,6 +286,28 @@ public class Connection extends Observable implements Runnable {
         return array;
     }
 
+    /**
+     * Gets the list of all connections.
+     *
+     * @return  an array of all connections.
+     */
+
+    private static Connection[] getAll() {
+        Vector all = new Vector(count.get());
+        Iterator iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+            Vector list = (Vector) iterator.next();
+            synchronized (list) {
+                for (int i = 0; i < list.size(); i++) {
+                    all.addElement(list.elementAt(i));
+                }
+            }
+        }
+        Connection[] array = new Connection[all.size()];
+        all.copyInto(array);
+        return array;
+    }
+
     /**
      * Checks whether the list of connections contains one with this host address.
      *
@@ -270,9 +331,7 @@ public class Connection extends Observable implements Runnable {
      */
 
     private static void incrementSent() {
-        synchronized (sentLock) {
-            sent++;
-        }
+        sent.increment();
     }
 
     /**
@@ -280,9 +339,7 @@ public class Connection extends Observable implements Runnable {
      */
 
     private static void incrementReceived() {
-        synchronized (receivedLock) {
-            received++;
-        }
+        received.increment();
     }
 
     /**
@@ -303,6 +360,50 @@ public class Connection extends Observable implements Runnable {
         }
     }
 
+    /**
+     * Runs the send and receive threads of server connections as virtual threads
+     * when the Java runtime supports them.  Virtual threads are created by
+     * reflection so that this class still compiles and runs on older Java
+     * platforms, where the connections keep using platform threads.
+     *
+     * @return <code>true</code> if virtual threads are available; otherwise
+     *         <code>false</code>.
+     */
+
+    public static boolean useVirtualThreads() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            virtualThreads = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            virtualThreads = null;          // Not supported before Java 21
+        }
+        return virtualThreads != null;
+    }
+
+    /**
+     * Creates a send or receive thread for this connection.  Server connections
+     * use a virtual thread when enabled, or a thread in the specified thread
+     * group when thread groups are enabled.
+     *
+     * @param group   the thread group for server threads.
+     * @param target  the body of the thread.
+     * @param name    the name of the thread.
+     * @return the new thread, not yet started.
+     */
+
+    private Thread newThread(ThreadGroup group, Runnable target, String name) {
+        Thread thread;
+        if (isServer && virtualThreads != null) {
+            thread = virtualThreads.newThread(target);
+            thread.setName(name);
+        } else if (isServer && useThreadGroups) {
+            thread = new Thread(group, target, name);
+        } else {
+            thread = new Thread(target, name);
+        }
+        return thread;
+    }
+
     /**
      * Sets the global packet factory for all connections.
      *
@@ -370,7 +471,7 @@ public class Connection extends Observable implements Runnable {
      */
 
     public static long getSent() {
-        return sent;
+        return sent.sum();
     }
 
     /**
@@ -381,7 +482,47 @@ public class Connection extends Observable implements Runnable {
      */
 
     public static long getReceived() {
-        return received;
+        return received.sum();
+    }
+
+    /**
+     * Gets the number of objects waiting in the send queues of all connections.
+     * Non-blocking connections buffer bytes rather than objects and are not
+     * included.
+     *
+     * @returns the number of objects queued for sending.
+     */
+
+    public static int getQueuedCount() {
+        int total = 0;
+        Connection[] array = getAll();
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].channel == null) {
+                total += array[i].queue.size();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Gets the number of bytes of serialized frames waiting in the send queues of
+     * all connections, plus the bytes waiting in the output buffers of
+     * non-blocking connections.
+     *
+     * @returns the number of bytes queued for sending.
+     */
+
+    public static long getQueuedBytes() {
+        long total = 0;
+        Connection[] array = getAll();
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].channel == null) {
+                total += array[i].queue.getBytes();
+            } else {
+                total += array[i].buffer.size();
+            }
+        }
+        return total;
     }
 
     /**
@@ -391,7 +532,7 @@ public class Connection extends Observable implements Runnable {
      */
 
     public static int getCount() {
-        return count;
+        return count.get();
     }
 
     /**
@@ -405,18 +546,24 @@ public class Connection extends Observable implements Runnable {
     }
 
     /**
-     * Shuts down all connections on the server side by stopping all the send
-     * threads, which in turn stop the receive threads.
+     * Shuts down all connections on the server side by closing them with the
+     * service unavailable status code and waiting for their receive threads to
+     * finish, and by stopping the event loops servicing the non-blocking
+     * connections.  Closing each connection works the same for platform and
+     * virtual threads, which cannot be stopped through a thread group.
      */
 
     public static void shutdown() {
-        Thread[] receivers = new Thread[receiveGroup.activeCount()];
-        receiveGroup.enumerate(receivers);
-        sendGroup.stop();                   // Stop all connection threads
-        for (int i = 0; i < receivers.length; i++) {
-            if (receivers[i] != null) {
+        EventLoop.shutdown();
+        Connection[] array = getAll();
+        for (int i = 0; i < array.length; i++) {
+            array[i].close(HTTP_UNAVAILABLE);
+        }
+        for (int i = 0; i < array.length; i++) {
+            Thread receiver = array[i].receiver;
+            if (receiver != null) {
                 try {
-                    receivers[i].join(JOIN_TIMEOUT);
+                    receiver.join(JOIN_TIMEOUT);
                 } catch (InterruptedException e) {}
             }
         }
@@ -426,7 +573,9 @@ public class Connection extends Observable implements Runnable {
      * Creates a connection from an existing socket, optionally entering through
      * a <i>turnstile</i> limiting the total number of concurrent connections.
      * This constructor is called from the server side when creating connections
-     * for which there is a limit on the total number of connections.
+     * for which there is a limit on the total number of connections.  The
+     * connection is non-blocking if <code>useSelectors</code> is set and the
+     * socket has an associated channel.
      *
      * @param socket        the socket on which the connection is built.
      * @param useTurnstile  indicates that this connection came in through a
@@ -437,12 +586,27 @@ public class Connection extends Observable implements Runnable {
     public Connection(Socket socket, boolean useTurnstile) throws IOException {
         this.socket       = socket;
         this.useTurnstile = useTurnstile;
-        this.input        = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
-        this.output       = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        if (useSelectors && socket.getChannel() != null) {
+            this.channel   = socket.getChannel();
+            this.loop      = EventLoop.next();
+            this.buffer    = new ChannelOutputStream();
+            this.output    = new DataOutputStream(buffer);
+            this.inBuffer  = new byte[INPUT_SIZE];
+            channel.configureBlocking(false);
+        } else {
+            this.input     = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output    = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
         this.inetAddress  = socket.getInetAddress();
         this.queue        = new SendQueue(this);
         this.isServer     = true;
+        this.soTimeout    = socket.getSoTimeout();
         add(this);
+        if (soTimeout > 0) {
+            socket.setSoTimeout(0);         // Timed out by the timing wheel instead
+            lastRead = System.currentTimeMillis();
+            TimingWheel.schedule(this, lastRead + soTimeout);
+        }
     }
 
     /**
@@ -608,6 +772,32 @@ public class Connection extends Observable implements Runnable {
         return kicker;
     }
 
+    /**
+     * Sets the handler of the objects received on this connection.  Once a
+     * handler is set, each object received is passed to the handler alone
+     * rather than to all of the observers of the connection, so the handler
+     * can route it directly to the one observer that needs it.  The observers
+     * are still notified with the <code>null</code> object when the connection
+     * is closed.
+     *
+     * @param handler  the handler of the received objects.
+     */
+
+    public void setHandler(Observer handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Gets the handler of the objects received on this connection.
+     *
+     * @return the handler, or <code>null</code> if the received objects are
+     *         passed to the observers.
+     */
+
+    public Observer getHandler() {
+        return handler;
+    }
+
     /**
      * Gets the value of the specified attribute.
      *
@@ -659,7 +849,8 @@ public class Connection extends Observable implements Runnable {
 
     /**
      * Starts the asynchronous send thread.  Objects may be sent synchronously
-     * with the <code>send</code> method.
+     * with the <code>send</code> method.  Non-blocking connections have no send
+     * thread since their event loop writes the objects.
      *
      * @param priority  the priority of the send thread.
      * @see #write
@@ -667,13 +858,9 @@ public class Connection extends Observable implements Runnable {
      */
 
     public synchronized void startSending(int priority) {
-        if (sender == null) {
-            if (isServer && useThreadGroups) {
-                sender = new Thread(sendGroup, queue, SEND_NAME + id);
-            } else {
-                sender = new Thread(queue, SEND_NAME + id);
-            }
-            sender.setPriority(priority);
+        if (sender == null && channel == null) {
+            sender = newThread(sendGroup, queue, SEND_NAME + id);
+            sender.setPriority(priority);     // Ignored by virtual threads
             sender.start();
         }
     }
@@ -682,7 +869,8 @@ public class Connection extends Observable implements Runnable {
      * Starts the asynchronous receive thread.  This thread notifies all observers
      * of any received objects, notifying with the <code>null</code> object when
      * the connection is closed.  Objects may be received synchronously with the
-     * <code>read</code> method.
+     * <code>read</code> method.  A non-blocking connection is instead registered
+     * with its event loop, which notifies the observers on the loop thread.
      *
      * @param priority  the priority of the receiving thread.
      * @see #read
@@ -690,13 +878,11 @@ public class Connection extends Observable implements Runnable {
      */
 
     public synchronized void startReceiving(int priority) {
-        if (receiver == null) {
-            if (isServer && useThreadGroups) {
-                receiver = new Thread(receiveGroup, this, RECEIVE_NAME + id);
-            } else {
-                receiver = new Thread(this, RECEIVE_NAME + id);
-            }
-            receiver.setPriority(priority);
+        if (channel != null) {
+            loop.register(this);
+        } else if (receiver == null) {
+            receiver = newThread(receiveGroup, this, RECEIVE_NAME + id);
+            receiver.setPriority(priority);   // Ignored by virtual threads
             receiver.start();
         }
     }
@@ -711,9 +897,55 @@ public class Connection extends Observable implements Runnable {
      */
 
     public void send(Streamable object) throws IOException {
-        int count = queue.putElement((Object) object);
-        if (count == 0) {
-            throw new IOException("connection is closed");
+        if (channel != null) {
+            sendChannel(object);
+        } else {
+            int count = queue.putElement((Object) object);
+            if (count == 0) {
+                throw new IOException("connection is closed");
+            }
+        }
+    }
+
+    /**
+     * Serializes a streamable object into the output buffer of a non-blocking
+     * connection and asks its event loop to write the buffer if it was empty.
+     * Write pauses are not supported in non-blocking mode.  The connection is
+     * closed if the buffer grows past the byte limit of the send queues, since
+     * the bytes in the buffer cannot be shed.
+     *
+     * @param object  the streamable object to be sent on the connection.
+     * @exception java.io.IOException  if the connection is closed.
+     */
+
+    private void sendChannel(Streamable object) throws IOException {
+        boolean   empty;
+        Throwable error = null;
+        synchronized (buffer) {
+            if (! open) {
+                throw new IOException("connection is closed");
+            }
+            empty = buffer.isEmpty();
+            int mark = buffer.size();
+            try {
+                write(object);
+                int limit = SendQueue.getLimitBytes();
+                if (limit > 0 && buffer.size() > limit) {
+                    error = new IOException("send queue is full");
+                }
+            } catch (RuntimeException e) {
+                buffer.truncate(mark);        // Remove the partial object
+                error = e;
+            }
+        }
+        if (error instanceof IOException) {
+            printError("Error sending to " + getHostAddress() + ".", error);
+            close(HTTP_UNAVAILABLE);          // Client too slow
+        } else if (error != null) {
+            printError("Error sending to " + getHostAddress() + ".", error);
+            close(HTTP_INTERNAL_ERROR);
+        } else if (empty) {
+            loop.flush(this);
         }
     }
 
@@ -723,22 +955,48 @@ public class Connection extends Observable implements Runnable {
      * block if no buffers are available in the underlying subsystem.  If an error
      * besides an <code>IOException</code> occurs while writing the object, a
      * <code>StreamableError</code> is written to the socket stream instead.
-     * <p>This method is not thread safe and assumes only one send thread.
+     * <p>This method is not thread safe and assumes only one send thread.  On a
+     * non-blocking connection, it writes to the output buffer instead.
      *
      * @param object  the streamable object to be written to the output stream.
      * @exception java.io.IOException  if an I/O error occurs.
      */
 
     public void write(Streamable object) throws IOException {
+        writeBuffered(object);
+        output.flush();
+    }
+
+    /**
+     * Writes a streamable object to the buffered socket output stream without
+     * flushing it, so that the send thread can write a batch of objects and
+     * flush them all at once.
+     *
+     * @param object  the streamable object to be written to the output stream.
+     * @exception java.io.IOException  if an I/O error occurs.
+     * @see #flush
+     */
+
+    void writeBuffered(Streamable object) throws IOException {
         // output.writeUTF(object.getClass().getName());
         output.writeShort(object.getId());
         object.writeTo(output);
-        output.flush();
         if (counting) {
             incrementSent();
         }
     }
 
+    /**
+     * Flushes the objects written to the buffered socket output stream.
+     *
+     * @exception java.io.IOException  if an I/O error occurs.
+     * @see #writeBuffered
+     */
+
+    void flush() throws IOException {
+        output.flush();
+    }
+
     /**
      * Sends a <code>StreamableError</code> on the connection and prints an error
      * message.
@@ -772,8 +1030,9 @@ public class Connection extends Observable implements Runnable {
     }
 
     /**
-     * Handles an object received on this connection by notifying all of its
-     * observers with the received object.
+     * Handles an object received on this connection by passing it to the
+     * handler of the connection, or by notifying all of its observers with the
+     * received object if the connection has no handler.
      *
      * @param object  the object received on the connection.
      * @exception java.io.IOException  if an I/O error occurs.
@@ -781,7 +1040,12 @@ public class Connection extends Observable implements Runnable {
 
     private void handleObject(Object object) throws IOException {
         try {
-            notifyObservers(object);  // This method is synchronized in JDK 1.0.2
+            Observer target = handler;
+            if (target != null && object != null) {
+                target.update(this, object);
+            } else {
+                notifyObservers(object);  // This method is synchronized in JDK 1.0.2
+            }
         } catch (RuntimeException e) {
             notifyError(e);
         } catch (Error e) {
@@ -793,7 +1057,8 @@ public class Connection extends Observable implements Runnable {
      * Reads a streamable object synchronously from the socket input stream and
      * increments the receive count if counting is enabled.  This method will
      * block if a complete object is not immediately available.
-     * <p>This method is not thread safe and assumes only one receive thread.
+     * <p>This method is not thread safe and assumes only one receive thread.  It
+     * cannot be used on a non-blocking connection.
      *
      * @returns  the streamable object read from the input stream, or an
      *           <code>InterruptedIOException</code> if a timeout occurred.
@@ -819,6 +1084,9 @@ public class Connection extends Observable implements Runnable {
             Streamable object = factory.createPacket(input.readUnsignedShort());
             object.readFrom(input);
             timeouts = 0;
+            if (soTimeout > 0) {
+                lastRead = System.currentTimeMillis();
+            }
             if (counting) {
                 incrementReceived();
             }
@@ -914,6 +1182,11 @@ public class Connection extends Observable implements Runnable {
                 // all the "connection reset by peer" exceptions as failed requests.
                 // status = HTTP_INTERNAL_ERROR;
             }
+        } catch (ClosedChannelException e) { // Is an IOException
+            // Socket channel closed by another thread while blocked reading.
+            if (open) {
+                printError("Error reading from " + getHostAddress() + ".", e);
+            }
         }
         // IOException is reported by the VolanoChat CreateRooms packet when it
         // detects a room list or room name too long.
@@ -934,16 +1207,7 @@ public class Connection extends Observable implements Runnable {
             printError("Error reading from " + getHostAddress() + ".", t);
             status = HTTP_INTERNAL_ERROR;     // Set error status code
         } finally {
-            endTime = System.currentTimeMillis();
-            remove(this);
-            if (useTurnstile) {               // If connection came through turnstile
-                outTurnstile();    // Exit through turnstile as well
-            }
-
-            setChanged();
-            notifyObservers(null);            // This method is synchronized in JDK 1.0.2
-            deleteObservers();
-
+            closed();
             try {
                 // Thread.interrupt has no effect in some older Java virtual machines
                 // and may throw "netscape.security.AppletSecurityException:
@@ -970,15 +1234,351 @@ public class Connection extends Observable implements Runnable {
         }
     }
 
+    /**
+     * Removes this connection from the list of all connections and notifies all
+     * of its observers with the <code>null</code> object to indicate that the
+     * connection is closed.
+     */
+
+    private void closed() {
+        endTime = System.currentTimeMillis();
+        remove(this);
+        if (useTurnstile) {                   // If connection came through turnstile
+            outTurnstile();        // Exit through turnstile as well
+        }
+
+        setChanged();
+        notifyObservers(null);                // This method is synchronized in JDK 1.0.2
+        deleteObservers();
+    }
+
+    /**
+     * Registers the channel of this non-blocking connection with the selector of
+     * its event loop.  Called on the event loop thread.
+     *
+     * @param selector  the selector of the event loop.
+     */
+
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            lastRead = System.currentTimeMillis();
+            flushChannel();
+        } catch (IOException e) {
+            if (open) {
+                printError("Error reading from " + getHostAddress() + ".", e);
+            }
+            terminate();
+        }
+    }
+
+    /**
+     * Handles the readiness of the channel of this non-blocking connection by
+     * writing its buffered output or by reading and dispatching its received
+     * packets.  Called on the event loop thread.
+     *
+     * @param key  the selection key of the channel.
+     */
+
+    void ready(SelectionKey key) {
+        if (key.isValid() && key.isWritable()) {
+            flushChannel();
+        }
+        if (key.isValid() && key.isReadable() && fill()) {
+            dispatch();
+        }
+    }
+
+    /**
+     * Resumes reading on this non-blocking connection after a read pause,
+     * dispatching any packets already received.  Called on the event loop
+     * thread.
+     */
+
+    void resume() {
+        resumeTime = 0L;
+        if (! terminated && ! busy) {
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            dispatch();
+        }
+    }
+
+    /**
+     * Runs a task that may block, such as a request to another server, followed
+     * by its completion.  When called on the event loop thread of a non-blocking
+     * connection, the task runs on a worker thread so that it does not hold up
+     * the other connections of the loop, and no more packets are dispatched on
+     * this connection until the completion has run back on the loop thread.
+     * The completion is skipped if the connection is closed in the meantime.
+     * Otherwise, both run at once on the calling thread.
+     *
+     * @param task        the task that may block.
+     * @param completion  the task to run after it, in order with the packets
+     *                    received on this connection.
+     */
+
+    public void execute(final Runnable task, final Runnable completion) {
+        if (channel == null || ! loop.isCurrent()) {
+            task.run();
+            completion.run();
+            return;
+        }
+        busy = true;
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+        Runnable worker = new Runnable() {
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    loop.execute(new Runnable() {
+                        public void run() {
+                            complete(completion);
+                        }
+                    });
+                }
+            }
+        };
+        newThread(workGroup, worker, WORK_NAME + id).start();
+    }
+
+    /**
+     * Runs the completion of a blocking task and resumes reading on this
+     * non-blocking connection.  Called on the event loop thread.
+     *
+     * @param completion  the task to run after the blocking task.
+     */
+
+    private void complete(Runnable completion) {
+        busy = false;
+        if (! terminated) {
+            try {
+                try {
+                    completion.run();
+                } catch (RuntimeException e) {
+                    notifyError(e);
+                } catch (Error e) {
+                    notifyError(e);
+                }
+            } catch (IOException e) {
+                close();
+            }
+            if (open && ! busy && resumeTime == 0L) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * Gets the time at which reading on this non-blocking connection resumes
+     * after a read pause.
+     *
+     * @return the resume time in milliseconds.
+     */
+
+    long getResumeTime() {
+        return resumeTime;
+    }
+
+    /**
+     * Checks whether this connection has received nothing for longer than the
+     * socket timeout.  If so, the connection is notified of the timeout with an
+     * <code>InterruptedIOException</code>, just as a blocking read would time
+     * out.  Called on the timing wheel thread.
+     *
+     * @param now  the current time in milliseconds.
+     * @return the time at which the connection is next due to be checked, or
+     *         zero if the connection is closed.
+     */
+
+    long expire(long now) {
+        if (! open) {
+            return 0L;
+        }
+        long due = lastRead + soTimeout;
+        if (now < due) {
+            return due;
+        }
+        lastRead = now;
+        if (channel != null) {
+            loop.execute(new Runnable() {
+                public void run() {
+                    timedOut();
+                }
+            });
+        } else {
+            timedOut();
+        }
+        return now + soTimeout;
+    }
+
+    /**
+     * Notifies the observers of this connection that a read timed out.  Called
+     * on the event loop thread for a non-blocking connection, and on the timing
+     * wheel thread otherwise.
+     */
+
+    private void timedOut() {
+        if (open) {
+            timeouts++;
+            try {
+                setChanged();
+                handleObject(new InterruptedIOException("Read timed out"));
+            } catch (IOException e) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Writes as much of the buffered output of this non-blocking connection as
+     * the channel accepts, waiting for the channel to become writable if any
+     * output remains.  Called on the event loop thread.
+     */
+
+    void flushChannel() {
+        if (key != null && ! terminated) {
+            try {
+                if (buffer.writeTo(channel)) {
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                } else {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            } catch (IOException e) {
+                close();                      // Error means connection is closed
+            }
+        }
+    }
+
+    /**
+     * Reads the bytes available on the channel of this non-blocking connection
+     * into its input buffer.
+     *
+     * @return <code>true</code> if bytes were read; otherwise <code>false</code>
+     *         if the connection was closed.
+     */
+
+    private boolean fill() {
+        if (inCount == inBuffer.length) {
+            if (inBuffer.length >= INPUT_LIMIT) {
+                printError("Error reading from " + getHostAddress() + ".", new IOException("packet too large"));
+                close(HTTP_BAD_REQUEST);
+                return false;
+            }
+            byte[] larger = new byte[inBuffer.length * 2];
+            System.arraycopy(inBuffer, 0, larger, 0, inCount);
+            inBuffer = larger;
+        }
+        try {
+            int n = channel.read(ByteBuffer.wrap(inBuffer, inCount, inBuffer.length - inCount));
+            if (n < 0) {
+                close();                      // Socket closed normally by other side
+                return false;
+            }
+            inCount += n;
+            lastRead = System.currentTimeMillis();
+            return true;
+        } catch (IOException e) {
+            if (open) {
+                printError("Error reading from " + getHostAddress() + ".", e);
+            }
+            close();
+            return false;
+        }
+    }
+
+    /**
+     * Reads each complete packet in the input buffer of this non-blocking
+     * connection and notifies all of its observers, leaving any partial packet
+     * in the buffer until the rest of it arrives.  Dispatching stops when the
+     * connection is closed or a packet requires a read pause.
+     */
+
+    private void dispatch() {
+        int offset = 0;
+        try {
+            while (open && resumeTime == 0L && ! busy && offset < inCount) {
+                ByteArrayInputStream bytes = new ByteArrayInputStream(inBuffer, offset, inCount - offset);
+                DataInputStream      input = new DataInputStream(bytes);
+                Streamable object;
+                try {
+                    object = factory.createPacket(input.readUnsignedShort());
+                    object.readFrom(input);
+                } catch (EOFException e) {
+                    break;                    // Wait for the rest of the packet
+                }
+                offset = inCount - bytes.available();
+                timeouts = 0;
+                if (counting) {
+                    incrementReceived();
+                }
+                setChanged();
+                handleObject(object);         // Observers can close this connection
+                long pause = object.getReadPause();
+                if (pause > 0L && open) {
+                    resumeTime = System.currentTimeMillis() + pause;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                    loop.suspend(this);
+                }
+            }
+        } catch (IOException e) {
+            printError("Error reading from " + getHostAddress() + ".", e);
+            close(HTTP_BAD_REQUEST);
+        } catch (ClassNotFoundException e) {
+            printError("Error reading from " + getHostAddress() + ".", e);
+            close(HTTP_BAD_REQUEST);
+        } catch (ThreadDeath e) {
+            close(HTTP_UNAVAILABLE);
+            throw e;                          // Rethrow for cleanup
+        } catch (Throwable t) {
+            printError("Error reading from " + getHostAddress() + ".", t);
+            close(HTTP_INTERNAL_ERROR);
+        } finally {
+            inCount -= offset;
+            System.arraycopy(inBuffer, offset, inBuffer, 0, inCount);
+        }
+    }
+
+    /**
+     * Notifies the observers that this non-blocking connection is closed and
+     * closes its channel.  Called on the event loop thread.
+     */
+
+    void terminate() {
+        if (! terminated) {
+            terminated = true;
+            open = false;
+            try {
+                closed();
+            } finally {
+                if (key != null) {
+                    key.cancel();
+                }
+                try {
+                    channel.close();
+                } catch (IOException e) {}
+            }
+        }
+    }
+
     /**
      * Closes the connection without a status code, for use when the client closes
-     * a connection normally.
+     * a connection normally.  A non-blocking connection is closed by its event
+     * loop thread.
+     * <p>This method never blocks while holding the lock, so a virtual thread
+     * calling it does not pin its carrier thread for long.
      */
 
     public synchronized void close() {
         if (open) {
             open = false;
-            if (Thread.currentThread() != receiver) { // No need to interrupt ourselves
+            if (channel != null) {
+                loop.execute(new Runnable() {
+                    public void run() {
+                        terminate();
+                    }
+                });
+            } else if (Thread.currentThread() != receiver) { // No need to interrupt ourselves
                 // 2.6.3
                 // Interrupting the receive thread has no effect on the thread,
                 // is unnecessary, and even hits this nasty bug in J2SE 1.5 Beta 1:
@@ -24,10 +24,22 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.Properties;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * This class performs an ip4r DNSBL-style IP address check, checking the
@@ -141,6 +153,18 @@ import java.util.Vector;
  * All 6 lists                           1770  53% (+  1%)
  * </pre>
  *
+ * <p>An address is checked against all of the lists in parallel by a small
+ * pool of resolver threads, so a slow list does not hold up the thread asking
+ * for the check.  A list that has not answered within the timeout is taken
+ * not to contain the address.  The answers are cached, for longer when an
+ * address is found than when it is not, so a client reconnecting does not
+ * repeat the queries, and clients checked while a query is in progress share
+ * its answer.  The number of queries waiting for a resolver thread is bounded,
+ * so when a list stops answering, a query that cannot be queued is taken not
+ * to find the address, and a query whose timeout has passed while it waited
+ * is skipped.  The host name lookups can be directed to a stub resolver for
+ * testing.
+ *
  * @author  John Neffenger
  * @version 2.5
  * @since   2.5
@@ -152,13 +176,80 @@ public class DNSBlacklist {
     private static final int INET4_ADDRESS_BYTES = 4;
     private static final int INET6_ADDRESS_BYTES = 16;
     private static final int IP4R_PREFIX_BUFFER = 16;
+    private static final String THREAD_NAME = "DNSBlacklist";
+    private static final int THREADS = 16;            // Most queries in progress at once
+    private static final int QUEUED = 256;            // Most queries waiting for a thread
+    private static final int CACHE_LIMIT = 10000;     // Answers cached before removing expired ones
+    private static final long MILLIS_PER_SECOND = 1000L;
 
     private static Vector denied = new Vector();
     private static Vector dynamic = new Vector();
 
+    private static int timeout = 2000;                           // Milliseconds to wait for each list
+    private static long foundTime = 3600 * MILLIS_PER_SECOND;    // Time to cache an address found
+    private static long notFoundTime = 300 * MILLIS_PER_SECOND;  // Time to cache an address not found
+    private static Resolver defaultResolver = new Resolver() {
+        public InetAddress[] getAllByName(String host) throws UnknownHostException {
+            return InetAddress.getAllByName(host);
+        }
+    };
+    private static Resolver resolver = defaultResolver;
+    private static ThreadPoolExecutor resolvers;        // Created when first needed
+    private static ScheduledExecutorService timer;      // Created with the resolvers
+    private static ConcurrentHashMap answers = new ConcurrentHashMap();  // Query names to cached answers
+    private static ConcurrentHashMap queries = new ConcurrentHashMap();  // Query names to queries in progress
+
     private String zone = "";
     private String response = "";
 
+    /**
+     * The interface for receiving the result of checking an address.
+     */
+
+    public interface Callback {
+
+        /**
+         * Called when the address has been checked against the lists.
+         *
+         * @param address the IP address checked.
+         * @param found true if the address is found on one of the lists;
+         *        otherwise false.
+         */
+
+        void checked(String address, boolean found);
+    }
+
+    /**
+     * The interface for looking up the host names of the DNS queries.
+     */
+
+    public interface Resolver {
+
+        /**
+         * Gets the addresses of a host name.
+         *
+         * @param host the host name to look up.
+         * @return the addresses of the host.
+         * @exception java.net.UnknownHostException if the host is not found.
+         */
+
+        InetAddress[] getAllByName(String host) throws UnknownHostException;
+    }
+
+    /**
+     * A cached answer to a DNS query.
+     */
+
+    private static final class Answer {
+        private final boolean found;
+        private final long    expires;
+
+        private Answer(boolean found, long expires) {
+            this.found   = found;
+            this.expires = expires;
+        }
+    }
+
     /**
      * Gets the list of DNS blacklists for denying access.
      *
@@ -181,6 +272,64 @@ public class DNSBlacklist {
         return dynamic;
     }
 
+    /**
+     * Sets the time to wait for the answer from each DNS blacklist.
+     *
+     * @param millis the timeout in milliseconds.
+     */
+
+    public static void setTimeout(int millis) {
+        timeout = millis;
+    }
+
+    /**
+     * Sets the times for which the answers from the DNS blacklists are cached.
+     *
+     * @param found the time in seconds to cache an address found on a list.
+     * @param notFound the time in seconds to cache an address not found on a
+     *        list.
+     */
+
+    public static void setCacheTimes(int found, int notFound) {
+        foundTime = found * MILLIS_PER_SECOND;
+        notFoundTime = notFound * MILLIS_PER_SECOND;
+    }
+
+    /**
+     * Sets the resolver for the DNS queries and clears the cached answers.
+     *
+     * @param newResolver the resolver to use, or <code>null</code> to look up
+     *        the queries with the system resolver.
+     */
+
+    public static void setResolver(Resolver newResolver) {
+        resolver = newResolver == null ? defaultResolver : newResolver;
+        answers.clear();
+    }
+
+    /**
+     * Gets the pool of threads for the DNS queries, creating it and the timer
+     * thread if necessary.
+     *
+     * @return the resolver thread pool.
+     */
+
+    private static synchronized ThreadPoolExecutor getResolvers() {
+        if (resolvers == null) {
+            ThreadFactory factory = new ThreadFactory() {
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            };
+            resolvers = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue(QUEUED), factory);
+            resolvers.allowCoreThreadTimeOut(true);
+            timer = Executors.newSingleThreadScheduledExecutor(factory);
+        }
+        return resolvers;
+    }
+
     /**
      * Adds a sequence of DNS blacklists to the given list.  The DNS blacklists
      * are separated by white space and in the format <code>zone:response</code>
@@ -207,21 +356,86 @@ public class DNSBlacklist {
 
     /**
      * Checks whether the address is found in the specified list of DNS
-     * blacklists.  The lists are checked in the order given.
+     * blacklists, waiting for the answer.
      *
      * @param vector the list of DNS blacklists to check.
-     * @param address the address to check in each list until found.
+     * @param address the address to check in each list.
      * @return true if the address is found on one of the lists; otherwise false.
      */
 
     public static boolean contains(Vector vector, String address) {
-        boolean found = false;
-        Enumeration enumeration = vector.elements();
-        while (enumeration.hasMoreElements() && !found) {
-            DNSBlacklist dnsbl = (DNSBlacklist) enumeration.nextElement();
-            found = dnsbl.contains(address);
+        final CompletableFuture result = new CompletableFuture();
+        check(vector, address, new Callback() {
+            public void checked(String address, boolean found) {
+                result.complete(Boolean.valueOf(found));
+            }
+        });
+        return ((Boolean) result.join()).booleanValue();
+    }
+
+    /**
+     * Checks whether the address is found in the specified list of DNS
+     * blacklists without waiting for the answer.  The lists are all checked at
+     * once, and the callback is called as soon as one list is found to contain
+     * the address or when every list has answered or timed out.  If all of the
+     * answers are cached, the callback is called before this method returns.
+     * Otherwise it is called on a resolver or timer thread.
+     *
+     * @param vector the list of DNS blacklists to check.
+     * @param address the address to check in each list.
+     * @param callback the callback to receive the result.
+     */
+
+    public static void check(Vector vector, final String address, final Callback callback) {
+        InetAddress host = null;
+        try {
+            host = InetAddress.getByName(address);
+        } catch (UnknownHostException e) {}
+        Object[] lists = vector.toArray();
+        if (host == null || lists.length == 0) {
+            callback.checked(address, false);
+            return;
+        }
+        final AtomicInteger remaining = new AtomicInteger(lists.length);
+        final AtomicBoolean done = new AtomicBoolean();
+        Consumer consumer = new Consumer() {
+            public void accept(Object found) {
+                if (((Boolean) found).booleanValue()) {
+                    if (done.compareAndSet(false, true)) {
+                        callback.checked(address, true);
+                    }
+                } else if (remaining.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+                    callback.checked(address, false);
+                }
+            }
+        };
+        for (int i = 0; i < lists.length; i++) {
+            ((DNSBlacklist) lists[i]).lookup(host).thenAccept(consumer);
         }
-        return found;
+    }
+
+    /**
+     * Caches the answer to a DNS query, first removing the expired answers if
+     * the cache is full.
+     *
+     * @param name the host name of the query.
+     * @param found true if the address was found; otherwise false.
+     */
+
+    private static void cache(String name, boolean found) {
+        long now = System.currentTimeMillis();
+        if (answers.size() >= CACHE_LIMIT) {
+            Iterator iterator = answers.values().iterator();
+            while (iterator.hasNext()) {
+                if (((Answer) iterator.next()).expires <= now) {
+                    iterator.remove();
+                }
+            }
+            if (answers.size() >= CACHE_LIMIT) {
+                answers.clear();
+            }
+        }
+        answers.put(name, new Answer(found, now + (found ? foundTime : notFoundTime)));
     }
 
     /**
@@ -296,39 +510,76 @@ public class DNSBlacklist {
     }
 
     /**
-     * Checks whether the DNS blacklist contains the specified address.
+     * Checks whether the addresses returned by a DNS query mean that the
+     * address is found in the DNS blacklist.
      *
-     * @param address the IP address to check.
+     * @param list the addresses returned by the query.
      * @return true if the address is found in the blacklist; otherwise false.
      */
 
-    private boolean contains(InetAddress address) {
-        boolean found = false;
-        if (address != null) {
-            try {
-                InetAddress[] list = InetAddress.getAllByName(getPrefix(address) + zone);
-                found = response.length() == 0;
-                for (int i = 0; i < list.length && !found; i++) {
-                    found = response.equals(list[i].getHostAddress());
-                }
-            } catch (UnknownHostException e) {}
+    private boolean matches(InetAddress[] list) {
+        boolean found = response.length() == 0;
+        for (int i = 0; i < list.length && !found; i++) {
+            found = response.equals(list[i].getHostAddress());
         }
         return found;
     }
 
     /**
-     * Checks whether the DNS blacklist contains the specified address.
+     * Looks up the specified address in the DNS blacklist.  The answer comes
+     * from the cache if possible, or from a query already in progress for the
+     * same address.  Otherwise a new query is started on a resolver thread.
+     * If the query does not finish within the timeout, or cannot be queued
+     * because too many queries are waiting, the address is taken not to be in
+     * the list.  The answer is cached when the query finishes, and the query
+     * is skipped if its timeout passes before a resolver thread takes it.
      *
-     * @param address the IP address check.
-     * @return true if the address is found in the blacklist; otherwise false.
+     * @param address the IP address to look up.
+     * @return the future result, <code>Boolean.TRUE</code> if the address is
+     *         found in the blacklist; otherwise <code>Boolean.FALSE</code>.
      */
 
-    private boolean contains(String address) {
-        InetAddress inetAddress = null;
+    private CompletableFuture lookup(InetAddress address) {
+        final String name = getPrefix(address) + zone;
+        Answer answer = (Answer) answers.get(name);
+        if (answer != null && answer.expires > System.currentTimeMillis()) {
+            return CompletableFuture.completedFuture(Boolean.valueOf(answer.found));
+        }
+        final CompletableFuture query = new CompletableFuture();
+        CompletableFuture previous = (CompletableFuture) queries.putIfAbsent(name, query);
+        if (previous != null) {
+            return previous;
+        }
+        Runnable task = new Runnable() {
+            public void run() {
+                if (query.isDone()) {
+                    queries.remove(name, query);    // Timed out while waiting
+                    return;
+                }
+                boolean found = false;
+                try {
+                    found = matches(resolver.getAllByName(name));
+                    cache(name, found);
+                } catch (UnknownHostException e) {
+                    cache(name, found);         // Not found in the list
+                } catch (RuntimeException e) {} // No answer -- do not cache
+                queries.remove(name, query);
+                query.complete(Boolean.valueOf(found));
+            }
+        };
         try {
-            inetAddress = InetAddress.getByName(address);
-        } catch (UnknownHostException e) {}
-        return contains(inetAddress);
+            getResolvers().execute(task);
+        } catch (RejectedExecutionException e) {
+            queries.remove(name, query);
+            query.complete(Boolean.FALSE);          // Too many queries waiting
+            return query;
+        }
+        timer.schedule(new Runnable() {
+            public void run() {
+                query.complete(Boolean.FALSE);
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        return query;
     }
 
     /**
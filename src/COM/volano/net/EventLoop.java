@@ -0,0 +1,267 @@
+/*
+ * EventLoop.java - a selector thread for non-blocking connections.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+import  java.io.*;
+import  java.nio.channels.*;
+import  java.util.*;
+
+/**
+ * This class multiplexes many non-blocking connections onto a single thread
+ * using a selector.  The thread reads and dispatches the packets received on
+ * its connections, writes their buffered output when the socket channels are
+ * writable, and delivers their read timeouts from the timing wheel.  A small
+ * pool of event loops, one per processor, replaces the pair of send and
+ * receive threads used by each blocking connection.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Connection
+ */
+
+class EventLoop implements Runnable {
+    private static final String NAME         = "EventLoop-";
+    private static final int    JOIN_TIMEOUT = 3000;   // 3 seconds
+
+    private static Object      poolLock = new Object();  // Synchronization lock
+    private static EventLoop[] pool;                     // Event loops, one per processor
+    private static int         next;                     // Index of next loop in pool
+
+    private Selector         selector;
+    private Thread           thread;
+    private volatile boolean running  = true;
+    private Vector           tasks    = new Vector();  // Tasks to run on this loop's thread
+    private Vector           flushing = new Vector();  // Connections with output to write
+    private Vector           paused   = new Vector();  // Connections with reading suspended
+
+    /**
+     * Gets the next event loop from the pool in round-robin order, creating and
+     * starting the pool the first time it is called.
+     *
+     * @return the event loop for a new connection.
+     * @exception java.io.IOException  if a selector cannot be opened.
+     */
+
+    static EventLoop next() throws IOException {
+        synchronized (poolLock) {
+            if (pool == null) {
+                EventLoop[] loops = new EventLoop[Runtime.getRuntime().availableProcessors()];
+                for (int i = 0; i < loops.length; i++) {
+                    loops[i] = new EventLoop(NAME + (i + 1));
+                }
+                pool = loops;
+            }
+            EventLoop loop = pool[next];
+            next = (next + 1) % pool.length;
+            return loop;
+        }
+    }
+
+    /**
+     * Stops all event loops, closing their connections with the service
+     * unavailable status code.
+     */
+
+    static void shutdown() {
+        EventLoop[] loops;
+        synchronized (poolLock) {
+            loops = pool;
+            pool  = null;
+        }
+        if (loops != null) {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i].stop();
+            }
+            for (int i = 0; i < loops.length; i++) {
+                try {
+                    loops[i].thread.join(JOIN_TIMEOUT);
+                } catch (InterruptedException e) {}
+            }
+        }
+    }
+
+    /**
+     * Creates and starts a new event loop.
+     *
+     * @param name  the name of the event loop thread.
+     * @exception java.io.IOException  if the selector cannot be opened.
+     */
+
+    private EventLoop(String name) throws IOException {
+        selector = Selector.open();
+        thread   = new Thread(this, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Runs a task on the thread of this event loop.
+     *
+     * @param task  the task to run.
+     */
+
+    void execute(Runnable task) {
+        tasks.addElement(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Checks whether the caller is running on the thread of this event loop.
+     *
+     * @return <code>true</code> if called on the loop thread; otherwise
+     *         <code>false</code>.
+     */
+
+    boolean isCurrent() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Registers a connection with this event loop so that its packets are read
+     * and dispatched by the loop thread.
+     *
+     * @param connection  the non-blocking connection to register.
+     */
+
+    void register(final Connection connection) {
+        execute(new Runnable() {
+            public void run() {
+                connection.register(selector);
+            }
+        });
+    }
+
+    /**
+     * Requests that the buffered output of a connection be written to its
+     * channel.
+     *
+     * @param connection  the connection with output to write.
+     */
+
+    void flush(Connection connection) {
+        flushing.addElement(connection);
+        selector.wakeup();
+    }
+
+    /**
+     * Suspends reading on a connection until its resume time, for pausing after
+     * a packet with a read delay.  Must be called on this loop's thread.
+     *
+     * @param connection  the connection whose reading is suspended.
+     */
+
+    void suspend(Connection connection) {
+        paused.addElement(connection);
+    }
+
+    /**
+     * Stops this event loop.
+     */
+
+    private void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Runs the pending tasks and writes the output of the connections waiting to
+     * be flushed.
+     */
+
+    private void runPending() {
+        Object[] list;
+        synchronized (tasks) {
+            list = tasks.toArray();
+            tasks.removeAllElements();
+        }
+        for (int i = 0; i < list.length; i++) {
+            ((Runnable) list[i]).run();
+        }
+        synchronized (flushing) {
+            list = flushing.toArray();
+            flushing.removeAllElements();
+        }
+        for (int i = 0; i < list.length; i++) {
+            ((Connection) list[i]).flushChannel();
+        }
+    }
+
+    /**
+     * Resumes reading on the suspended connections whose pause has elapsed.
+     *
+     * @param now  the current time in milliseconds.
+     * @return the earliest time at which another connection is to be resumed.
+     */
+
+    private long resumePaused(long now) {
+        for (int i = paused.size() - 1; i >= 0; i--) {
+            Connection connection = (Connection) paused.elementAt(i);
+            if (connection.getResumeTime() <= now) {
+                paused.removeElementAt(i);
+                connection.resume();        // May suspend the connection again
+            }
+        }
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < paused.size(); i++) {
+            earliest = Math.min(earliest, ((Connection) paused.elementAt(i)).getResumeTime());
+        }
+        return earliest;
+    }
+
+    /**
+     * The body of the event loop thread.  This thread waits for its socket
+     * channels to become readable or writable, hands each ready channel to its
+     * connection, and resumes reading on connections whose read delay has
+     * elapsed.
+     */
+
+    public void run() {
+        long nextResume = Long.MAX_VALUE;
+        try {
+            while (running) {
+                if (nextResume == Long.MAX_VALUE) {
+                    selector.select();
+                } else {
+                    selector.select(Math.max(nextResume - System.currentTimeMillis(), 1L));
+                }
+                runPending();
+                Iterator iterator = selector.selectedKeys().iterator();
+                while (iterator.hasNext()) {
+                    SelectionKey key = (SelectionKey) iterator.next();
+                    iterator.remove();
+                    ((Connection) key.attachment()).ready(key);
+                }
+                nextResume = resumePaused(System.currentTimeMillis());
+            }
+        } catch (ThreadDeath e) {
+            throw e;                          // Rethrow for cleanup
+        } catch (Throwable t) {
+            Connection.printError("Error in " + thread.getName() + ".", t);
+        } finally {
+            Object[] keys = selector.keys().toArray();
+            for (int i = 0; i < keys.length; i++) {
+                Connection connection = (Connection) ((SelectionKey) keys[i]).attachment();
+                connection.close(Connection.HTTP_UNAVAILABLE);
+                connection.terminate();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {}
+        }
+    }
+}
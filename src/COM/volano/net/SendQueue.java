@@ -21,9 +21,23 @@ import  COM.volano.util.*;
 import  java.io.*;
 import  java.net.*;
 import  java.util.*;
+import  java.util.concurrent.atomic.*;
+import  java.util.concurrent.locks.*;
 
 /**
  * This class manages a queue of streamable objects to be sent on a connection.
+ * The send thread writes all of the objects it removes from the queue into the
+ * buffered output stream and flushes them together, up to a maximum batch
+ * size.  It can also wait a short time for more objects before flushing, so
+ * that bursts of objects in busy rooms go out in fewer socket writes.
+ *
+ * <p>The queue can be bounded in objects and in bytes of serialized frames.
+ * When a slow client lets its queue grow past either limit, the queue first
+ * cancels pairs of enter and exit frames and then drops the oldest droppable
+ * frames, if those policies are enabled.  If the queue is still full, it is
+ * closed and the connection is closed with the service unavailable status.
+ * The thread that finds the queue full does the shedding while the other
+ * threads continue to add objects without waiting for it.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
@@ -31,7 +45,20 @@ import  java.util.*;
  */
 
 public class SendQueue extends NotifyQueue implements Runnable {
-    private Connection connection;
+    private static int  batchSize = 64;   // Most objects written per flush
+    private static long batchLatency;     // Most time to wait for more objects
+
+    private static int     limitCount;    // Most objects queued, or 0 for no limit
+    private static int     limitBytes;    // Most frame bytes queued, or 0 for no limit
+    private static boolean coalescing;    // Cancel enter and exit frames when full
+    private static boolean dropping;      // Drop droppable frames when full
+
+    private Connection    connection;
+    private Object[]      list;                               // Objects removed from the queue
+    private int           unflushed;                          // Objects written but not flushed
+    private AtomicInteger bytes    = new AtomicInteger();     // Bytes of the frames in the queue
+    private ReentrantLock shedLock = new ReentrantLock();     // Held while shedding objects
+    private volatile boolean overflowed;                      // Closed because the queue was full
 
     /**
      * Creates a new send queue for the specified connection.
@@ -43,6 +70,234 @@ public class SendQueue extends NotifyQueue implements Runnable {
         this.connection = connection;
     }
 
+    /**
+     * Sets the maximum number of objects written to a connection before they are
+     * flushed.
+     *
+     * @param size  the maximum batch size, or 1 to flush every object.
+     */
+
+    public static void setBatchSize(int size) {
+        batchSize = Math.max(size, 1);
+    }
+
+    /**
+     * Sets the maximum time the send thread waits for more objects before
+     * flushing the ones already written.
+     *
+     * @param latency  the latency cap in milliseconds, or 0 to flush as soon as
+     *                 the queue is empty.
+     */
+
+    public static void setBatchLatency(long latency) {
+        batchLatency = Math.max(latency, 0L);
+    }
+
+    /**
+     * Sets the limits on the number of objects and the number of bytes of
+     * serialized frames in each send queue.  Bytes are counted only for frames,
+     * which carry the broadcasts that fill the queue of a slow client.
+     *
+     * @param count  the maximum number of objects, or 0 for no limit.
+     * @param bytes  the maximum number of bytes, or 0 for no limit.
+     */
+
+    public static void setLimits(int count, int bytes) {
+        limitCount = Math.max(count, 0);
+        limitBytes = Math.max(bytes, 0);
+    }
+
+    /**
+     * Sets what a full send queue does before closing its connection.
+     *
+     * @param coalesce  <code>true</code> to cancel queued pairs of enter and
+     *                  exit frames with the same key.
+     * @param drop      <code>true</code> to drop the oldest droppable frames.
+     */
+
+    public static void setOverflowPolicy(boolean coalesce, boolean drop) {
+        coalescing = coalesce;
+        dropping   = drop;
+    }
+
+    /**
+     * Gets the limit on the number of bytes of serialized frames.
+     *
+     * @return the maximum number of bytes, or 0 for no limit.
+     */
+
+    static int getLimitBytes() {
+        return limitBytes;
+    }
+
+    /**
+     * Gets the number of bytes of serialized frames in this queue.
+     *
+     * @return the number of frame bytes queued.
+     */
+
+    int getBytes() {
+        return Math.max(bytes.get(), 0);
+    }
+
+    /**
+     * Gets the number of bytes counted against the limit for a queued object.
+     *
+     * @param object  the queued object.
+     * @return the length of the frame and its identifier, or zero if the object
+     *         is not a frame.
+     */
+
+    private static int sizeOf(Object object) {
+        return object instanceof StreamableFrame ? ((StreamableFrame) object).length() + 2 : 0;
+    }
+
+    /**
+     * Gets the disposition of a queued object.
+     *
+     * @param object  the queued object.
+     * @return the disposition of the frame, or <code>KEEP</code> if the object
+     *         is not a frame.
+     */
+
+    private static int dispositionOf(Object object) {
+        return object instanceof StreamableFrame ? ((StreamableFrame) object).getDisposition() : StreamableFrame.KEEP;
+    }
+
+    /**
+     * Checks whether the queue holds more than the given fraction of its limits.
+     *
+     * @param count     the number of objects in the queue.
+     * @param bytes     the number of frame bytes in the queue.
+     * @param quarters  the fraction of the limits, in quarters.
+     * @return <code>true</code> if either limit is exceeded; otherwise
+     *         <code>false</code>.
+     */
+
+    private static boolean exceeds(int count, int bytes, int quarters) {
+        return (limitCount > 0 && count * 4L > (long) limitCount * quarters)
+               || (limitBytes > 0 && bytes * 4L > (long) limitBytes * quarters);
+    }
+
+    /**
+     * Adds an object to the queue, closing the connection if the queue
+     * overflowed, since its send thread may be blocked writing to a client that
+     * stopped reading.
+     *
+     * @param   object  the object to be added to the end of the queue.
+     * @returns the number of elements in the queue after this elements is added,
+     *          or zero if the queue is closed.
+     */
+
+    public int putElement(Object object) {
+        int count = super.putElement(object);
+        if (overflowed) {
+            connection.close(Connection.HTTP_UNAVAILABLE);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the bytes of an added object and sheds objects if the queue is
+     * full.  If another thread is already shedding, this thread leaves the
+     * queue to it.
+     *
+     * @param object  the object added to the queue.
+     */
+
+    protected void elementAdded(Object object) {
+        int total = bytes.addAndGet(sizeOf(object));
+        if (exceeds(size(), total, 4) && shedLock.tryLock()) {
+            try {
+                if (coalescing) {
+                    coalesce();
+                }
+                if (dropping && exceeds(size(), bytes.get(), 4)) {
+                    drop();
+                }
+                if (exceeds(size(), bytes.get(), 4)) {
+                    overflowed = true;
+                    close();
+                }
+            } finally {
+                shedLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Subtracts the bytes of the objects the send thread removes.
+     *
+     * @param list   the array holding the objects removed.
+     * @param count  the number of objects removed.
+     */
+
+    protected void elementsRemoved(Object[] list, int count) {
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            total += sizeOf(list[i]);
+        }
+        if (total > 0) {
+            bytes.addAndGet(-total);
+        }
+    }
+
+    /**
+     * Cancels a queued entry, subtracting the bytes of its object.
+     *
+     * @param entry  the entry to cancel.
+     * @return <code>true</code> if the object was cancelled; <code>false</code>
+     *         if the send thread already removed it.
+     */
+
+    private boolean shed(Entry entry) {
+        Object object = entry.getElement();
+        if (cancel(entry)) {
+            bytes.addAndGet(-sizeOf(object));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes each enter frame and the later exit frame with the same key, such
+     * as a user entering and leaving a room while the client was not reading.
+     * The enter frame is cancelled first, so that the send thread can never
+     * write an enter frame whose exit frame was cancelled.
+     */
+
+    private void coalesce() {
+        Entry[]   entries = getEntries();
+        Hashtable entered = new Hashtable();
+        for (int i = 0; i < entries.length; i++) {
+            Object object      = entries[i].getElement();
+            int    disposition = dispositionOf(object);
+            if (disposition == StreamableFrame.ENTER) {
+                entered.put(((StreamableFrame) object).getKey(), entries[i]);
+            } else if (disposition == StreamableFrame.EXIT) {
+                Entry enter = (Entry) entered.remove(((StreamableFrame) object).getKey());
+                if (enter != null && shed(enter)) {
+                    shed(entries[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the oldest droppable frames until the queue is down to three
+     * quarters of its limits, leaving room for new objects before the queue
+     * needs to be shed again.
+     */
+
+    private void drop() {
+        Entry[] entries = getEntries();
+        for (int i = 0; i < entries.length && exceeds(size(), bytes.get(), 3); i++) {
+            if (dispositionOf(entries[i].getElement()) == StreamableFrame.DROP) {
+                shed(entries[i]);
+            }
+        }
+    }
+
     /**
      * Pauses for the configured time if the object is streamable.
      *
@@ -58,20 +313,51 @@ public class SendQueue extends NotifyQueue implements Runnable {
     }
 
     /**
-     * Writes an array of streamable objects to a connection, one at a time, in
-     * the order in which they were added to the queue.
+     * Writes the streamable objects removed from the queue to a connection, one
+     * at a time, in the order in which they were added to the queue.  The
+     * objects are flushed when the batch is full and before any write pause.
      *
-     * @param list  the array of streamable objects to be written.
+     * @param count  the number of objects in the list to be written.
      */
 
-    private void sendList(Object[] list) throws IOException, InterruptedException {
-        for (int i = 0; i < list.length; i++) {
+    private void sendList(int count) throws IOException, InterruptedException {
+        for (int i = 0; i < count; i++) {
             Streamable object = (Streamable) list[i];
-            connection.write(object);
+            list[i] = null;
+            connection.writeBuffered(object);
+            unflushed++;
+            if (unflushed >= batchSize || object.getWritePause() > 0L) {
+                flush();
+            }
             pause(object);
         }
     }
 
+    /**
+     * Waits up to the latency cap for more objects, writing them into the
+     * current batch until the batch is flushed or the time elapses.
+     */
+
+    private void linger() throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + batchLatency;
+        long wait     = batchLatency;
+        while (unflushed > 0 && wait > 0L && isOpen()) {
+            sendList(getElements(list, wait));
+            wait = deadline - System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Flushes the objects written since the last flush.
+     */
+
+    private void flush() throws IOException {
+        if (unflushed > 0) {
+            connection.flush();
+            unflushed = 0;
+        }
+    }
+
     /**
      * The body of the asynchronous send thread started by
      * <code>Connection.startSending</code>.  This thread waits for objects to be
@@ -82,9 +368,14 @@ public class SendQueue extends NotifyQueue implements Runnable {
 
     public void run() {
         int status = Connection.HTTP_OK;
+        list = new Object[batchSize];
         try {
             while (isOpen()) {
-                sendList(getElements());
+                sendList(getElements(list));
+                if (batchLatency > 0L) {
+                    linger();
+                }
+                flush();
                 Thread.yield();         // Yield to equal priority threads (for Solaris)
             }
         } catch (InterruptedException e) {
@@ -98,6 +389,11 @@ public class SendQueue extends NotifyQueue implements Runnable {
             Connection.printError("Error sending to " + connection.getHostAddress() + ".", t);
             status = Connection.HTTP_INTERNAL_ERROR;  // Set error status code
         } finally {
+            if (overflowed) {
+                Connection.printError("Error sending to " + connection.getHostAddress() + ".",
+                                      new IOException("send queue is full"));
+                status = Connection.HTTP_UNAVAILABLE;   // Client too slow
+            }
             connection.close(status);                 // Ignored if already closed
         }
     }
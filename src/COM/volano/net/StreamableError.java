@@ -78,7 +78,7 @@ public class StreamableError extends Packet {
 
     public void writeTo(DataOutputStream output) throws IOException {
         super.writeTo(output);
-        output.writeUTF(text);
+        UTFCodec.write(output, text);
     }
 
     /**
@@ -90,6 +90,6 @@ public class StreamableError extends Packet {
 
     public void readFrom(DataInputStream input) throws IOException {
         super.readFrom(input);
-        text = input.readUTF();
+        text = UTFCodec.read(input);
     }
 }
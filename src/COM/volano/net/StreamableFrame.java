@@ -0,0 +1,167 @@
+/*
+ * StreamableFrame.java - a streamable object serialized once for many connections.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+import  java.io.*;
+
+/**
+ * This class holds the serialized form of a streamable object so that the
+ * object can be sent on many connections while being encoded only once.  The
+ * bytes of a frame never change, so it may be queued on any number of
+ * connections at the same time.  Writing a frame simply copies its bytes to
+ * the output stream, so the bytes written are identical to those of the
+ * original object.
+ *
+ * <p>A frame may also be given a disposition telling a full send queue what it
+ * can do with the frame to avoid closing a slow connection:  a frame that can
+ * be dropped, or one of a pair of enter and exit frames with the same key,
+ * which cancel each other out.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Connection#send
+ */
+
+public class StreamableFrame implements Streamable {
+    // Dispositions of a frame in a full send queue.
+    public static final int KEEP  = 0;    // Must be sent
+    public static final int DROP  = 1;    // May be discarded
+    public static final int ENTER = 2;    // Cancelled by a later EXIT with the same key
+    public static final int EXIT  = 3;    // Cancels an earlier ENTER with the same key
+
+    private int    disposition = KEEP;
+    private Object key;
+    private int    id;
+    private long   readPause;
+    private long   writePause;
+    private byte[] bytes;
+
+    /**
+     * Creates a frame by serializing the streamable object.  Later changes to
+     * the object have no effect on the frame.
+     *
+     * @param object  the streamable object to serialize.
+     * @exception java.io.IOException  if the object cannot be serialized.
+     */
+
+    public StreamableFrame(Streamable object) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        object.writeTo(new DataOutputStream(buffer));
+        this.id         = object.getId();
+        this.readPause  = object.getReadPause();
+        this.writePause = object.getWritePause();
+        this.bytes      = buffer.toByteArray();
+    }
+
+    /**
+     * Gets the integer identifier of the serialized object.
+     *
+     * @return the object's integer identifier.
+     */
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the read pause of the serialized object.
+     *
+     * @return the pause, in milliseconds, after reading the object.
+     */
+
+    public long getReadPause() {
+        return readPause;
+    }
+
+    /**
+     * Gets the write pause of the serialized object.
+     *
+     * @return the pause, in milliseconds, after writing the object.
+     */
+
+    public long getWritePause() {
+        return writePause;
+    }
+
+    /**
+     * Sets the disposition of this frame in a full send queue.
+     *
+     * @param disposition  <code>KEEP</code>, <code>DROP</code>,
+     *                     <code>ENTER</code>, or <code>EXIT</code>.
+     * @param key          the key matching enter and exit frames, or
+     *                     <code>null</code> for the others.
+     */
+
+    public void setDisposition(int disposition, Object key) {
+        this.disposition = disposition;
+        this.key         = key;
+    }
+
+    /**
+     * Gets the disposition of this frame in a full send queue.
+     *
+     * @return the disposition of this frame.
+     */
+
+    public int getDisposition() {
+        return disposition;
+    }
+
+    /**
+     * Gets the key matching enter and exit frames.
+     *
+     * @return the key of this frame, or <code>null</code> if none.
+     */
+
+    public Object getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the number of bytes in the serialized object, excluding its
+     * identifier.
+     *
+     * @return the length of this frame in bytes.
+     */
+
+    public int length() {
+        return bytes.length;
+    }
+
+    /**
+     * Writes the bytes of the serialized object to the data output stream.
+     *
+     * @param output  the output stream to which the object is to be written.
+     * @exception java.io.IOException  when an I/O error occurs.
+     */
+
+    public void writeTo(DataOutputStream output) throws IOException {
+        output.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Frames are only written, never read.
+     *
+     * @param input  the input stream.
+     * @exception java.io.IOException  always, since frames cannot be read.
+     */
+
+    public void readFrom(DataInputStream input) throws IOException {
+        throw new IOException("frame cannot be read");
+    }
+}
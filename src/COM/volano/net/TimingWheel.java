@@ -0,0 +1,142 @@
+/*
+ * TimingWheel.java - a hashed timing wheel for connection read timeouts.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+
+/**
+ * This class detects idle connections for both blocking and non-blocking
+ * transports with a single thread, in place of a socket timeout on every
+ * connection.  Each connection with a read timeout is kept in one slot of a
+ * circular array of one-second slots, chosen by the time at which it could
+ * next time out.  Scheduling a connection takes constant time, and each tick
+ * of the wheel looks only at the connections in one slot.
+ *
+ * <p>A connection records the time of its last read, but is not moved on
+ * the wheel when it reads.  When its slot comes up, the connection is either
+ * rescheduled for its last read plus its timeout or, if it has been idle for
+ * the whole timeout, notified of the timeout and rescheduled for another full
+ * timeout.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Connection
+ */
+
+class TimingWheel implements Runnable {
+    private static final String NAME = "TimingWheel";
+    private static final long   TICK = 1000L;     // 1 second per slot
+    private static final int    SIZE = 1024;      // Slots, a power of 2 (about 17 minutes)
+    private static final int    MASK = SIZE - 1;
+
+    private static Object      lock = new Object();   // Synchronization lock
+    private static TimingWheel wheel;                 // The single timing wheel
+
+    private Connection[] slots = new Connection[SIZE];  // First connection in each slot
+    private long         tick  = System.currentTimeMillis() / TICK;  // Last tick run
+
+    /**
+     * Schedules a connection to be checked for a timeout at the specified
+     * time, creating and starting the timing wheel the first time it is
+     * called.
+     *
+     * @param connection  the connection to check.
+     * @param deadline    the time in milliseconds when the connection next
+     *                    times out if it reads nothing before then.
+     */
+
+    static void schedule(Connection connection, long deadline) {
+        synchronized (lock) {
+            if (wheel == null) {
+                wheel = new TimingWheel();
+                Thread thread = new Thread(wheel, NAME);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            wheel.add(connection, deadline);
+        }
+    }
+
+    /**
+     * Adds a connection to the slot for its deadline.  Called with the lock
+     * held.
+     *
+     * @param connection  the connection to add.
+     * @param deadline    the time in milliseconds when the connection is due.
+     */
+
+    private void add(Connection connection, long deadline) {
+        int index = (int) (Math.max(deadline / TICK, tick + 1) & MASK);
+        connection.deadline  = deadline;
+        connection.timerNext = slots[index];
+        slots[index] = connection;
+    }
+
+    /**
+     * Checks the connections in the slot for a tick.  Connections due in a
+     * later turn of the wheel are put back into the slot.
+     *
+     * @param tick  the tick whose slot is checked.
+     * @param now   the current time in milliseconds.
+     */
+
+    private void expire(long tick, long now) {
+        Connection connection;
+        synchronized (lock) {
+            int index = (int) (tick & MASK);
+            connection = slots[index];
+            slots[index] = null;
+            this.tick = tick;
+        }
+        while (connection != null) {
+            Connection next = connection.timerNext;
+            connection.timerNext = null;
+            long deadline = connection.deadline / TICK > tick ? connection.deadline : connection.expire(now);
+            if (deadline > 0L) {
+                synchronized (lock) {
+                    add(connection, deadline);
+                }
+            }
+            connection = next;
+        }
+    }
+
+    /**
+     * The body of the timing wheel thread.  Once each second, this thread
+     * checks the slots for each tick that has passed.
+     */
+
+    public void run() {
+        try {
+            while (true) {
+                long now = System.currentTimeMillis();
+                Thread.sleep(TICK - now % TICK);
+                now = System.currentTimeMillis();
+                long last = now / TICK;
+                for (long t = Math.max(tick + 1, last - MASK); t <= last; t++) {
+                    expire(t, now);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Caught when interrupted on shutdown.
+        } catch (ThreadDeath e) {
+            throw e;                          // Rethrow for cleanup
+        } catch (Throwable t) {
+            Connection.printError("Error in " + NAME + ".", t);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * UTFCodec.java - a modified UTF-8 string codec for streamable objects.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.net;
+import  java.io.*;
+
+/**
+ * This class reads and writes strings in the modified UTF-8 format of
+ * <code>DataInputStream.readUTF</code> and
+ * <code>DataOutputStream.writeUTF</code>, producing exactly the same bytes,
+ * but without allocating temporary arrays for each string.  Each thread
+ * encodes and decodes through its own byte and character buffers, which are
+ * reused from one string to the next.  Since each connection reads on its own
+ * receive thread and writes on its own send thread, the buffers are in effect
+ * those of the connection.  Strings of plain ASCII characters are copied
+ * directly between the two buffers.
+ *
+ * <p>Streamable objects use this class as follows:
+ * <pre>
+ *   public void writeTo(DataOutputStream output) throws IOException {
+ *     UTFCodec.write(output, text);
+ *   }
+ *
+ *   public void readFrom(DataInputStream input) throws IOException {
+ *     text = UTFCodec.read(input);
+ *   }
+ * </pre>
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ * @see     Streamable
+ */
+
+public class UTFCodec {
+    private static final int INITIAL_SIZE = 256;   // Initial size of the buffers
+    private static final int RETAIN_SIZE  = 4096;  // Largest buffers kept between strings
+    private static final int MAX_LENGTH   = 65535; // Largest encoded string
+
+    private static ThreadLocal codecs = new ThreadLocal();  // Codec of each thread
+
+    private byte[] bytes = new byte[INITIAL_SIZE];
+    private char[] chars = new char[INITIAL_SIZE];
+
+    /**
+     * Gets the codec of the current thread, creating it the first time.
+     *
+     * @return the codec for this thread.
+     */
+
+    private static UTFCodec get() {
+        UTFCodec codec = (UTFCodec) codecs.get();
+        if (codec == null) {
+            codec = new UTFCodec();
+            codecs.set(codec);
+        }
+        return codec;
+    }
+
+    /**
+     * Reads a string in modified UTF-8 format from the data input stream.
+     *
+     * @param input  the data input stream.
+     * @return the string read.
+     * @exception java.io.IOException  if an I/O error occurs or the bytes are not
+     *                                 valid modified UTF-8.
+     */
+
+    public static String read(DataInputStream input) throws IOException {
+        return get().decode(input, false);
+    }
+
+    /**
+     * Reads a string in modified UTF-8 format from the data input stream and
+     * removes its leading and trailing white space, with the same result as
+     * <code>read(input).trim()</code> but without making a copy of the string.
+     *
+     * @param input  the data input stream.
+     * @return the string read, without leading or trailing white space.
+     * @exception java.io.IOException  if an I/O error occurs or the bytes are not
+     *                                 valid modified UTF-8.
+     */
+
+    public static String readTrimmed(DataInputStream input) throws IOException {
+        return get().decode(input, true);
+    }
+
+    /**
+     * Writes a string in modified UTF-8 format to the data output stream.
+     *
+     * @param output  the data output stream.
+     * @param string  the string to write.
+     * @exception java.io.IOException  if an I/O error occurs or the encoded
+     *                                 string is longer than 65,535 bytes.
+     */
+
+    public static void write(DataOutputStream output, String string) throws IOException {
+        get().encode(output, string);
+    }
+
+    /**
+     * Decodes a string read from the data input stream.
+     *
+     * @param input  the data input stream.
+     * @param trim   <code>true</code> to remove leading and trailing white
+     *               space; otherwise <code>false</code>.
+     * @return the string read.
+     * @exception java.io.IOException  if an I/O error occurs or the bytes are not
+     *                                 valid modified UTF-8.
+     */
+
+    private String decode(DataInputStream input, boolean trim) throws IOException {
+        int    length = input.readUnsignedShort();
+        byte[] in     = length > bytes.length ? grow(length) : bytes;
+        char[] out    = length > chars.length ? new char[length] : chars;
+        input.readFully(in, 0, length);
+
+        int index = 0;
+        int count = 0;
+        while (index < length && in[index] >= 0) {   // ASCII fast path
+            out[count++] = (char) in[index++];
+        }
+        while (index < length) {
+            int c = in[index] & 0xff;
+            switch (c >> 4) {
+            case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+                index++;
+                out[count++] = (char) c;
+                break;
+            case 12: case 13:
+                if (index + 2 > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                int c2 = in[index + 1];
+                if ((c2 & 0xc0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (index + 2));
+                }
+                out[count++] = (char) (((c & 0x1f) << 6) | (c2 & 0x3f));
+                index += 2;
+                break;
+            case 14:
+                if (index + 3 > length) {
+                    throw new UTFDataFormatException("malformed input: partial character at end");
+                }
+                int b2 = in[index + 1];
+                int b3 = in[index + 2];
+                if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80) {
+                    throw new UTFDataFormatException("malformed input around byte " + (index + 2));
+                }
+                out[count++] = (char) (((c & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+                index += 3;
+                break;
+            default:
+                throw new UTFDataFormatException("malformed input around byte " + index);
+            }
+        }
+        if (out.length <= RETAIN_SIZE) {
+            chars = out;
+        }
+
+        int start = 0;
+        if (trim) {
+            while (start < count && out[start] <= ' ') {
+                start++;
+            }
+            while (count > start && out[count - 1] <= ' ') {
+                count--;
+            }
+        }
+        return new String(out, start, count - start);
+    }
+
+    /**
+     * Encodes a string and writes it to the data output stream, preceded by its
+     * encoded length.
+     *
+     * @param output  the data output stream.
+     * @param string  the string to write.
+     * @exception java.io.IOException  if an I/O error occurs or the encoded
+     *                                 string is longer than 65,535 bytes.
+     */
+
+    private void encode(DataOutputStream output, String string) throws IOException {
+        int size   = string.length();
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int c = string.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) {
+                length++;
+            } else if (c <= 0x07ff) {
+                length += 2;
+            } else {
+                length += 3;
+            }
+        }
+        if (length > MAX_LENGTH) {
+            throw new UTFDataFormatException("encoded string too long: " + length + " bytes");
+        }
+
+        byte[] out   = length > bytes.length ? grow(length) : bytes;
+        int    count = 0;
+        if (length == size) {                           // ASCII fast path
+            for (int i = 0; i < size; i++) {
+                out[count++] = (byte) string.charAt(i);
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                int c = string.charAt(i);
+                if (c >= 0x0001 && c <= 0x007f) {
+                    out[count++] = (byte) c;
+                } else if (c <= 0x07ff) {
+                    out[count++] = (byte) (0xc0 | ((c >> 6) & 0x1f));
+                    out[count++] = (byte) (0x80 | (c & 0x3f));
+                } else {
+                    out[count++] = (byte) (0xe0 | ((c >> 12) & 0x0f));
+                    out[count++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    out[count++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+        output.writeShort(length);
+        output.write(out, 0, length);
+    }
+
+    /**
+     * Gets a byte buffer large enough for the encoded string, keeping it for
+     * later strings unless it is unusually large.
+     *
+     * @param length  the number of bytes needed.
+     * @return the byte buffer.
+     */
+
+    private byte[] grow(int length) {
+        byte[] buffer = new byte[Math.max(length, bytes.length * 2)];
+        if (buffer.length <= RETAIN_SIZE) {
+            bytes = buffer;
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * IntHashtable.java - a hash table with primitive integer keys.
+ * Copyright (C) 1996-1998 John Neffenger
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package COM.volano.util;
+import  java.util.Vector;
+import  java.util.concurrent.atomic.*;
+
+/**
+ * This class maps primitive integer keys to values without creating an
+ * <code>Integer</code> object for each key.  Any number of threads can get
+ * values from the table without locking while another thread adds or removes
+ * entries.  The entries in each bucket are never changed except for their
+ * values, so a thread getting a value always sees a consistent chain of
+ * entries, either before or after a change.
+ *
+ * @author  John Neffenger
+ * @version 2.14.0
+ */
+
+public class IntHashtable {
+    private static final int   INITIAL_SIZE = 16;     // A power of 2
+    private static final float LOAD_FACTOR  = 0.75f;
+
+    private volatile AtomicReferenceArray table = new AtomicReferenceArray(INITIAL_SIZE);
+    private volatile int                  count;
+    private int                           threshold = (int) (INITIAL_SIZE * LOAD_FACTOR);
+
+    /**
+     * An entry in a bucket of the table.
+     */
+
+    private static final class Entry {
+        private final int      key;
+        private volatile Object value;
+        private final Entry    next;
+
+        private Entry(int key, Object value, Entry next) {
+            this.key   = key;
+            this.value = value;
+            this.next  = next;
+        }
+    }
+
+    /**
+     * Gets the index of the bucket for a key.
+     *
+     * @param key     the key.
+     * @param length  the number of buckets, a power of 2.
+     * @return  the index of the bucket.
+     */
+
+    private static int indexOf(int key, int length) {
+        int hash = key * 0x9e3779b9;          // Spreads sequential keys
+        return (hash ^ (hash >>> 16)) & (length - 1);
+    }
+
+    /**
+     * Gets the number of entries in the table.
+     *
+     * @return  the number of keys in the table.
+     */
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Gets the value to which a key is mapped.
+     *
+     * @param key  the key.
+     * @return  the value, or <code>null</code> if the key is not in the table.
+     */
+
+    public Object get(int key) {
+        AtomicReferenceArray buckets = table;
+        Entry entry = (Entry) buckets.get(indexOf(key, buckets.length()));
+        while (entry != null) {
+            if (entry.key == key) {
+                return entry.value;
+            }
+            entry = entry.next;
+        }
+        return null;
+    }
+
+    /**
+     * Gets the values in the table.  Like getting a value, this does not wait
+     * for a change to the table, so the values are those in the table at some
+     * point during the call.
+     *
+     * @param array  an array into which the values are copied if it is big
+     *               enough, giving the runtime type of the array returned.
+     * @return  an array holding the values.
+     */
+
+    public Object[] toArray(Object[] array) {
+        AtomicReferenceArray buckets = table;
+        Vector values = new Vector(count);
+        for (int i = 0; i < buckets.length(); i++) {
+            for (Entry e = (Entry) buckets.get(i); e != null; e = e.next) {
+                values.addElement(e.value);
+            }
+        }
+        return values.toArray(array);
+    }
+
+    /**
+     * Maps a key to a value in the table.
+     *
+     * @param key    the key.
+     * @param value  the value, which must not be <code>null</code>.
+     * @return  the previous value of the key, or <code>null</code> if the key was
+     *          not in the table.
+     */
+
+    public synchronized Object put(int key, Object value) {
+        if (value == null) {
+            throw new NullPointerException();
+        }
+        AtomicReferenceArray buckets = table;
+        int   index = indexOf(key, buckets.length());
+        Entry first = (Entry) buckets.get(index);
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            if (entry.key == key) {
+                Object old = entry.value;
+                entry.value = value;
+                return old;
+            }
+        }
+        buckets.set(index, new Entry(key, value, first));
+        if (++count > threshold) {
+            rehash();
+        }
+        return null;
+    }
+
+    /**
+     * Removes a key from the table.
+     *
+     * @param key  the key to remove.
+     * @return  the value of the key, or <code>null</code> if the key was not in
+     *          the table.
+     */
+
+    public synchronized Object remove(int key) {
+        AtomicReferenceArray buckets = table;
+        int   index = indexOf(key, buckets.length());
+        Entry first = (Entry) buckets.get(index);
+        for (Entry entry = first; entry != null; entry = entry.next) {
+            if (entry.key == key) {
+                // Copy the entries ahead of the one removed.
+                Entry head = entry.next;
+                for (Entry e = first; e != entry; e = e.next) {
+                    head = new Entry(e.key, e.value, head);
+                }
+                buckets.set(index, head);
+                count--;
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Doubles the number of buckets in the table.  Called with the lock held.
+     */
+
+    private void rehash() {
+        AtomicReferenceArray buckets = table;
+        AtomicReferenceArray larger  = new AtomicReferenceArray(buckets.length() * 2);
+        for (int i = 0; i < buckets.length(); i++) {
+            for (Entry e = (Entry) buckets.get(i); e != null; e = e.next) {
+                int index = indexOf(e.key, larger.length());
+                larger.set(index, new Entry(e.key, e.value, (Entry) larger.get(index)));
+            }
+        }
+        threshold = (int) (larger.length() * LOAD_FACTOR);
+        table = larger;
+    }
+}
@@ -1,5 +1,5 @@
 /*
- * NotifyQueue.java - a vector for managing producer/consumer threads.
+ * NotifyQueue.java - a queue for managing producer/consumer threads.
  * Copyright (C) 1996-1998 John Neffenger
  *
  * This program is free software: you can redistribute it and/or modify
@@ -18,17 +18,54 @@
 
 package COM.volano.util;
 import  java.util.*;
+import  java.util.concurrent.atomic.*;
+import  java.util.concurrent.locks.*;
 
 /**
  * This class implements a queue which allows producing threads to put elements
  * on a queue and at the same time notify a consuming thread of their presence.
+ * The queue is a linked list which any number of producing threads can append
+ * to without locking, and which a single consuming thread drains in batches
+ * into an array that it reuses.  A producing thread wakes the consuming thread
+ * only when the consuming thread is parked waiting for elements.
  *
  * @author  John Neffenger
  * @version 25 Jan 1998
  */
 
-public class NotifyQueue extends Vector {
-    private boolean open = true;
+public class NotifyQueue {
+    private static final Object NULL = new Object();  // Stands in for null elements
+
+    private volatile boolean open = true;
+    private volatile Entry   head = new Entry(null);  // Last entry removed, owned by consumer
+    private AtomicReference  tail = new AtomicReference(head);
+    private AtomicInteger    size = new AtomicInteger();
+    private volatile Thread  waiter;                  // Consuming thread while parked
+
+    /**
+     * An entry in the queue, holding an element until it is removed by the
+     * consuming thread or cancelled by a subclass.
+     */
+
+    protected static final class Entry extends AtomicReference {
+        private static final long serialVersionUID = 1L;
+        private volatile Entry    next;
+
+        private Entry(Object element) {
+            super(element);
+        }
+
+        /**
+         * Gets the element held by this entry.
+         *
+         * @return the element, or <code>null</code> if the element was removed.
+         */
+
+        public Object getElement() {
+            Object element = get();
+            return element == NULL ? null : element;
+        }
+    }
 
     /**
      * Determines whether this queue is open to handle new elements.
@@ -46,44 +83,202 @@ public class NotifyQueue extends Vector {
      * additional elements to be added.
      */
 
-    public synchronized void close() {
+    public void close() {
         open = false;
-        removeAllElements();
-        notify();
+        size.set(0);
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Gets the number of elements in the queue.
+     *
+     * @return the number of elements waiting to be removed.
+     */
+
+    public int size() {
+        return Math.max(size.get(), 0);
     }
 
     /**
      * Adds an element to the queue behind any existing elements.
      *
      * @param   object  the object to be added to the end of the queue.
-     * @returns the number of elements in the queue after this elements is added.
+     * @returns the number of elements in the queue after this elements is added,
+     *          or zero if the queue is closed.
      */
 
-    public synchronized int putElement(Object object) {
-        if (open) {
-            addElement(object);
-            notify();
+    public int putElement(Object object) {
+        if (! open) {
+            return 0;
         }
-        return elementCount;
+        Entry entry = new Entry(object == null ? NULL : object);
+        int   count = size.incrementAndGet();
+        Entry last  = (Entry) tail.getAndSet(entry);
+        last.next = entry;
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        elementAdded(object);
+        return open ? count : 0;
+    }
+
+    /**
+     * Removes up to <code>list.length</code> elements from the queue into the
+     * array, waiting for an element to be placed on the queue if the queue is
+     * empty when called.
+     *
+     * @param   list  the array to receive the elements.
+     * @returns the number of elements placed in the array, which is zero only
+     *          if the queue is closed.
+     * @exception java.lang.InterruptedException
+     *              if the calling thread is interrupted while waiting for an
+     *              element to be placed on the queue.
+     */
+
+    public int getElements(Object[] list) throws InterruptedException {
+        return getElements(list, 0L);
     }
 
     /**
-     * Removes all elements from the queue and returns them to the caller, waiting
-     * for an element to be placed on the queue if the queue is empty when called.
+     * Removes up to <code>list.length</code> elements from the queue into the
+     * array, waiting up to the specified time for an element to be placed on
+     * the queue if the queue is empty when called.
      *
-     * @returns an array containing the elements in the queue.
+     * @param   list     the array to receive the elements.
+     * @param   timeout  the maximum time to wait in milliseconds, or zero to
+     *                   wait until an element is added or the queue is closed.
+     * @returns the number of elements placed in the array, which is zero if
+     *          the queue is closed or the time elapsed before an element was
+     *          placed on the queue.
      * @exception java.lang.InterruptedException
      *              if the calling thread is interrupted while waiting for an
      *              element to be placed on the queue.
      */
 
-    public synchronized Object[] getElements() throws InterruptedException {
-        while (open && elementCount == 0) {
-            wait();
+    public int getElements(Object[] list, long timeout) throws InterruptedException {
+        long deadline = timeout > 0L ? System.nanoTime() + timeout * 1000000L : 0L;
+        int  count    = removeElements(list);
+        while (count == 0 && open) {
+            long nanos = 0L;
+            if (timeout > 0L) {
+                nanos = deadline - System.nanoTime();
+                if (nanos <= 0L) {
+                    break;
+                }
+            }
+            waiter = Thread.currentThread();
+            if (head.next == null && open) {
+                if (timeout > 0L) {
+                    LockSupport.parkNanos(this, nanos);
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            waiter = null;
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            count = removeElements(list);
         }
-        Object[] list = new Object[elementCount];
-        System.arraycopy(elementData, 0, list, 0, elementCount);
-        removeAllElements();
-        return list;
+        return count;
+    }
+
+    /**
+     * Removes up to <code>list.length</code> elements from the queue without
+     * waiting.  Called only by the consuming thread.
+     *
+     * @param   list  the array to receive the elements.
+     * @returns the number of elements placed in the array.
+     */
+
+    private int removeElements(Object[] list) {
+        if (! open) {
+            return 0;
+        }
+        Entry entry = head;
+        int   count = 0;
+        while (count < list.length) {
+            Entry next = entry.next;
+            if (next == null) {
+                break;
+            }
+            entry = next;
+            Object element = entry.getAndSet(null);
+            if (element != null) {                  // Null means cancelled
+                list[count++] = element == NULL ? null : element;
+            }
+        }
+        head = entry;
+        if (count > 0) {
+            size.addAndGet(-count);
+            elementsRemoved(list, count);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the entries in the queue, oldest first, so that a subclass can
+     * cancel some of them to bound its size.  The entries may be removed by the
+     * consuming thread at any time.
+     *
+     * @return an array of the entries in the queue.
+     */
+
+    protected Entry[] getEntries() {
+        Vector list  = new Vector();
+        Entry  entry = head.next;
+        while (entry != null) {
+            if (entry.get() != null) {
+                list.addElement(entry);
+            }
+            entry = entry.next;
+        }
+        Entry[] array = new Entry[list.size()];
+        list.copyInto(array);
+        return array;
+    }
+
+    /**
+     * Cancels an entry so that its element is not returned to the consuming
+     * thread.
+     *
+     * @param entry  the entry to cancel.
+     * @return <code>true</code> if the element was cancelled; <code>false</code>
+     *         if the element was already removed.
+     */
+
+    protected boolean cancel(Entry entry) {
+        Object element = entry.get();
+        if (element != null && entry.compareAndSet(element, null)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called by the producing thread after it adds an element, so that a
+     * subclass can keep track of the queue or cancel elements to bound its
+     * size.  Producing threads call this method concurrently.  A subclass may
+     * call <code>close</code> from this method.
+     *
+     * @param object  the element added to the end of the queue.
+     */
+
+    protected void elementAdded(Object object) {
+    }
+
+    /**
+     * Called by the consuming thread after it removes elements from the queue.
+     *
+     * @param list   the array holding the elements removed.
+     * @param count  the number of elements removed.
+     */
+
+    protected void elementsRemoved(Object[] list, int count) {
     }
 }